@@ -3,7 +3,9 @@ package org.cloudburstmc.proxypass;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.ToString;
+import org.cloudburstmc.proxypass.network.bedrock.util.CompressionAlgorithm;
 import org.cloudburstmc.proxypass.network.bedrock.util.LogTo;
+import org.cloudburstmc.proxypass.network.bedrock.util.SheddingPolicy;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -14,6 +16,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 @Getter
@@ -35,6 +38,58 @@ public class Configuration {
     private int maxClients = 0;
     @JsonProperty("log-to")
     private LogTo logTo = LogTo.FILE;
+    @JsonProperty("subchunk-cache-size")
+    private int subChunkCacheSize = 64;
+    @JsonProperty("translation-threads")
+    private int translationThreads = 2;
+    @JsonProperty("client-blob-cache")
+    private boolean clientBlobCache = true;
+    @JsonProperty("client-blob-cache-size")
+    private int clientBlobCacheSize = 8192;
+    @JsonProperty("item-translation-cache-size")
+    private int itemTranslationCacheSize = 256;
+    @JsonProperty("packet-passthrough")
+    private boolean packetPassthrough = true;
+    @JsonProperty("compression-algorithm")
+    private CompressionAlgorithm compressionAlgorithm = CompressionAlgorithm.ZLIB;
+    @JsonProperty("compression-level")
+    private int compressionLevel = 6;
+    @JsonProperty("compression-threshold")
+    private int compressionThreshold = 0;
+    @JsonProperty("compressed-passthrough")
+    private boolean compressedPassthrough = true;
+    @JsonProperty("outbound-batch-max-delay")
+    private int outboundBatchMaxDelay = 0;
+    @JsonProperty("outbound-batch-max-packets")
+    private int outboundBatchMaxPackets = 256;
+    @JsonProperty("outbound-priority")
+    private boolean outboundPriority = true;
+    @JsonProperty("outbound-queue-limit")
+    private int outboundQueueLimit = 512;
+    @JsonProperty("outbound-disconnect-limit")
+    private int outboundDisconnectLimit = 16384;
+    @JsonProperty("outbound-shedding")
+    private SheddingPolicy outboundShedding = SheddingPolicy.COALESCE;
+    @JsonProperty("chunk-pacing-rate")
+    private int chunkPacingRate = 4096;
+    @JsonProperty("chunk-pacing-burst")
+    private int chunkPacingBurst = 8192;
+    @JsonProperty("view-distance-governor")
+    private boolean viewDistanceGovernor = true;
+    @JsonProperty("view-distance-min")
+    private int viewDistanceMin = 4;
+    @JsonProperty("view-distance-cpu-high")
+    private double viewDistanceCpuHigh = 0.85;
+    @JsonProperty("view-distance-cpu-low")
+    private double viewDistanceCpuLow = 0.6;
+    @JsonProperty("view-distance-max-backlog")
+    private int viewDistanceMaxBacklog = 256;
+
+    @JsonProperty("palette-chain")
+    private List<PaletteVersion> paletteChain = List.of(
+            new PaletteVersion(618, "block_palette.1_20_30.nbt"),
+            new PaletteVersion(622, "block_palette.1_20_40.nbt")
+    );
 
     @JsonProperty("ignored-packets")
     private Set<String> ignoredPackets = Collections.emptySet();
@@ -65,4 +120,25 @@ public class Configuration {
             return new InetSocketAddress(host, port);
         }
     }
+
+    @Getter
+    @ToString
+    public static class PaletteVersion {
+        @JsonProperty("protocol-version")
+        private int protocolVersion;
+        private String palette;
+        /**
+         * Item runtime IDs of this version, optional. Without it the client gets the item IDs of the server.
+         */
+        @JsonProperty("item-palette")
+        private String itemPalette;
+
+        PaletteVersion() {
+        }
+
+        PaletteVersion(int protocolVersion, String palette) {
+            this.protocolVersion = protocolVersion;
+            this.palette = palette;
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package org.cloudburstmc.proxypass;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jline.reader.EndOfFileException;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.UserInterruptException;
+
+import java.util.Locale;
+
+/**
+ * Reads commands from the console while the proxy is running.
+ * <ul>
+ *     <li>{@code reload} rebuilds the block translation from the palette chain and swaps it in without disconnecting anyone</li>
+ *     <li>{@code stats} prints how often each packet translator ran and how long it took</li>
+ *     <li>{@code stop} shuts the proxy down</li>
+ * </ul>
+ */
+@Log4j2
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ProxyConsole implements Runnable {
+
+    private final ProxyPass proxy;
+
+    public static void start(ProxyPass proxy) {
+        Thread thread = new Thread(new ProxyConsole(proxy), "proxypass-console");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        LineReader reader = LineReaderBuilder.builder().build();
+        while (this.proxy.getRunning().get()) {
+            String line;
+            try {
+                line = reader.readLine();
+            } catch (UserInterruptException e) {
+                this.proxy.shutdown();
+                return;
+            } catch (EndOfFileException e) {
+                return; // No console attached
+            }
+
+            switch (line.trim().toLowerCase(Locale.ROOT)) {
+                case "" -> {
+                }
+                case "reload" -> {
+                    if (this.proxy.reloadBlockTranslation()) {
+                        log.info("Reloading block translation...");
+                    } else {
+                        log.info("A reload is already running");
+                    }
+                }
+                case "stats" -> {
+                    for (String stat : this.proxy.getPacketTranslators().describe()) {
+                        log.info(stat);
+                    }
+                }
+                case "stop", "exit" -> this.proxy.shutdown();
+                default -> log.info("Unknown command. Available commands: reload, stats, stop");
+            }
+        }
+    }
+}
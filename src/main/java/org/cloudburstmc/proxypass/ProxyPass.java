@@ -14,7 +14,10 @@ import io.netty.channel.Channel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.util.ResourceLeakDetector;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.ThreadLocalRandom;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
@@ -29,17 +32,37 @@ import org.cloudburstmc.netty.channel.raknet.RakChannelFactory;
 import org.cloudburstmc.netty.channel.raknet.config.RakChannelOption;
 import org.cloudburstmc.protocol.bedrock.BedrockPeer;
 import org.cloudburstmc.protocol.bedrock.BedrockPong;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
 import org.cloudburstmc.protocol.bedrock.codec.BedrockCodec;
+import org.cloudburstmc.protocol.bedrock.codec.v589.Bedrock_v589;
+import org.cloudburstmc.protocol.bedrock.codec.v594.Bedrock_v594;
 import org.cloudburstmc.protocol.bedrock.codec.v622.Bedrock_v622;
 import org.cloudburstmc.protocol.bedrock.codec.v618.Bedrock_v618;
 import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
 import org.cloudburstmc.protocol.bedrock.netty.initializer.BedrockChannelInitializer;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.bedrock.packet.UnknownPacket;
 import org.cloudburstmc.protocol.common.DefinitionRegistry;
+import org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkCache;
+import org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkTranslator;
 import org.cloudburstmc.proxypass.network.bedrock.session.Account;
 import org.cloudburstmc.proxypass.network.bedrock.session.ProxyClientSession;
 import org.cloudburstmc.proxypass.network.bedrock.session.ProxyServerSession;
 import org.cloudburstmc.proxypass.network.bedrock.session.UpstreamPacketHandler;
-import org.cloudburstmc.proxypass.network.bedrock.util.BlockPaletteUtils;
+import org.cloudburstmc.proxypass.network.bedrock.session.ViewDistanceGovernor;
+import org.cloudburstmc.proxypass.Configuration.PaletteVersion;
+import org.cloudburstmc.proxypass.network.bedrock.session.OutboundBatcher;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketPassthrough;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry;
+import org.cloudburstmc.proxypass.network.bedrock.translation.BlockPaletteChain;
+import org.cloudburstmc.proxypass.network.bedrock.translation.BlockStateRules;
+import org.cloudburstmc.proxypass.network.bedrock.translation.BlockTranslation;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemPalette;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemTranslation;
+import org.cloudburstmc.proxypass.network.bedrock.translation.LoginPacketCache;
+import org.cloudburstmc.proxypass.network.bedrock.translation.RuntimeIdTranslationTable;
+import org.cloudburstmc.proxypass.network.bedrock.translation.TranslationTableFile;
 import org.cloudburstmc.proxypass.network.bedrock.util.NbtBlockDefinitionRegistry;
 import org.cloudburstmc.proxypass.network.bedrock.util.UnknownBlockDefinitionRegistry;
 
@@ -57,7 +80,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 @Log4j2
@@ -85,7 +111,12 @@ public class ProxyPass {
             .subMotd("https://github.com/CloudburstMC/ProxyPass")
             .nintendoLimited(false);
     private static final DefaultPrettyPrinter PRETTY_PRINTER;
-    public static Map<Integer, String> legacyIdMap = new HashMap<>();
+    private static final String BLOCK_TRANSLATION_TABLE = "block_translation_table.%d.bin";
+    private static final String BLOCK_STATE_RULES = "block_state_rules.yml";
+    /**
+     * Codecs clients can connect with, as long as the palette chain contains their version.
+     */
+    private static final Int2ObjectMap<BedrockCodec> UPSTREAM_CODECS = new Int2ObjectOpenHashMap<>();
 
     static {
         PRETTY_PRINTER = new DefaultPrettyPrinter() {
@@ -108,6 +139,10 @@ public class ProxyPass {
         JSON_MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).setDefaultPrettyPrinter(PRETTY_PRINTER);
         SERVER_MINECRAFT_VERSION = SERVER_CODEC.getMinecraftVersion();
         CLIENT_MINECRAFT_VERSION = CLIENT_CODEC.getMinecraftVersion();
+
+        for (BedrockCodec codec : new BedrockCodec[]{Bedrock_v589.CODEC, Bedrock_v594.CODEC, Bedrock_v618.CODEC, Bedrock_v622.CODEC}) {
+            UPSTREAM_CODECS.put(codec.getProtocolVersion(), codec);
+        }
     }
 
     private final AtomicBoolean running = new AtomicBoolean(true);
@@ -126,14 +161,22 @@ public class ProxyPass {
     private Path baseDir;
     private Path sessionsDir;
     private Path dataDir;
-    private DefinitionRegistry<BlockDefinition> serverBlockDefinitions; // Block definitions FROM the server (v622)
-    private DefinitionRegistry<BlockDefinition> clientBlockDefinitions; // Block definitions FROM the client (v618)
-
-    Map<Integer, Integer> serverBlockPaletteMap;
-    Map<Integer, Integer> clientBlockPaletteMap;
-
-    Map<Integer, Integer> RIDReplacementsClientToServer = new HashMap<>();
-    Map<Integer, Integer> RIDReplacementsServerToClient = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<BlockTranslation> blockTranslation = new AtomicReference<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<ItemTranslation> itemTranslation = new AtomicReference<>(ItemTranslation.EMPTY);
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private SubChunkCache subChunkCache;
+    private final LoginPacketCache loginPacketCache = new LoginPacketCache();
+    private final PacketTranslatorRegistry packetTranslators = new PacketTranslatorRegistry();
+    /**
+     * Null if every packet is decoded
+     */
+    @Getter(AccessLevel.NONE)
+    private PacketPassthrough packetPassthrough;
+    private ViewDistanceGovernor viewDistanceGovernor;
+    private ExecutorService translationExecutor;
 
     private static Account account;
 
@@ -141,13 +184,27 @@ public class ProxyPass {
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.DISABLED);
         ProxyPass proxy = new ProxyPass();
         try {
+            if (args.length > 0 && args[0].equals("--compile-tables")) {
+                proxy.compileTables();
+                return;
+            }
             proxy.boot();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void boot() throws IOException {
+    /**
+     * Compiles the translation tables ahead of time so the next boot can load them directly.
+     */
+    public void compileTables() throws IOException {
+        this.loadConfiguration();
+        dataDir = Paths.get(".").toAbsolutePath().resolve("data");
+        Files.createDirectories(dataDir);
+        this.compileBlockTranslationTables(this.loadPaletteChain(configuration));
+    }
+
+    private void loadConfiguration() throws IOException {
         log.info("Loading configuration...");
         Path configPath = Paths.get(".").resolve("config.yml");
         if (Files.notExists(configPath) || !Files.isRegularFile(configPath)) {
@@ -155,6 +212,10 @@ public class ProxyPass {
         }
 
         configuration = Configuration.load(configPath);
+    }
+
+    public void boot() throws IOException {
+        this.loadConfiguration();
 
         proxyAddress = configuration.getProxy().getAddress();
         targetAddress = configuration.getDestination().getAddress();
@@ -187,119 +248,30 @@ public class ProxyPass {
             }
         }
 
-        // Load block palette, if it exists (taken from GeyserMC)
-        Object serverBlockDefinitionsNBT = this.loadGzipNBT("block_palette.1_20_40.nbt");
-        Object clientBlockDefinitionsNBT = this.loadGzipNBT("block_palette.1_20_30.nbt");
-
-        this.serverBlockPaletteMap = new HashMap<>();
-        this.clientBlockPaletteMap = new HashMap<>();
-
-        /*
-         * CardinalFix basically fakes this without actually fixing everything
-         * Since we have two seperate replacement maps...
-         * 
-         * serverBlockDefinitions is changed so that it uses the client's expected version (facing_direction)
-         * clientBlockDefinitions is changed so that it uses the server's expected version (cardinal_direction)
-         * 
-         * This is because it will already contain the *other* one
-         * This also means multiple hashes will link to the same ID, this is fine
-         */
-        List<String> cardinalFix = new ArrayList<>();
-        cardinalFix.add("minecraft:chest");
-        cardinalFix.add("minecraft:trapped_chest");
-        cardinalFix.add("minecraft:ender_chest");
-        cardinalFix.add("minecraft:stonecutter_block");
-
-        String[] facing_to_cardinal_directions = {
-            "unused", "unused", "north", "south", "west", "east"
-        };
-        
-
-        if (serverBlockDefinitionsNBT instanceof NbtMap serverNBTMap) {
-            List<NbtMap> serverBlockDefinitions = serverNBTMap.getList("blocks", NbtType.COMPOUND);
-            for (int i=0; i < serverBlockDefinitions.size(); i++) {
-                // Server Block Definitions
-                NbtMap serverBlockDefinition =  serverBlockDefinitions.get(i);
-                this.serverBlockPaletteMap.put(BlockPaletteUtils.createHash(serverBlockDefinition), i);
-
-                if (cardinalFix.contains(serverBlockDefinition.getString("name"))) { // Replace facing_direction with cardinal_direction
-                    String cardinalDirection = serverBlockDefinition.getCompound("states").getString("minecraft:cardinal_direction");
-                    int facing_direction=0;
-
-                    switch (cardinalDirection) {
-                        case "north":
-                            facing_direction=2;
-                            break;
-                        case "south":
-                            facing_direction=3;
-                            break;
-                        case "west":
-                            facing_direction=4;
-                            break;
-                        case "east":
-                            facing_direction=5;
-                            break;
-                    }
-
-                    NbtMapBuilder fixedStatesBuilder = serverBlockDefinition.getCompound("states").toBuilder();
-                    fixedStatesBuilder.remove("minecraft:cardinal_direction");
-                    fixedStatesBuilder.putInt("facing_direction", facing_direction);
-                    
-                    NbtMapBuilder fixedServerBlockDefinitionBuilder = serverBlockDefinition.toBuilder();
-                    fixedServerBlockDefinitionBuilder.remove("states");
-                    fixedServerBlockDefinitionBuilder.putCompound("states", fixedStatesBuilder.build());
-
-                    this.serverBlockPaletteMap.put(BlockPaletteUtils.createHash(fixedServerBlockDefinitionBuilder.build()), i); // Add this new fixed cardinal direction one
-                }
-            }
-
-            this.serverBlockDefinitions = new UnknownBlockDefinitionRegistry();
-        } else {
-            log.error(
-                    "Failed to load server block palette. Blocks will appear as runtime IDs in packet traces and creative_content.json!");
-            throw new RuntimeException();
+        if (configuration.isPacketPassthrough() && !configuration.isPacketTesting()) {
+            this.packetPassthrough = new PacketPassthrough(UPSTREAM_CODECS, CLIENT_CODEC, this.packetTranslators);
         }
+        this.viewDistanceGovernor = new ViewDistanceGovernor(configuration);
+        this.viewDistanceGovernor.start();
 
-        if (clientBlockDefinitionsNBT instanceof NbtMap clientNBTMap) {
-            List<NbtMap> clientBlockDefinitions = clientNBTMap.getList("blocks", NbtType.COMPOUND);
-            for (int i=0; i < clientBlockDefinitions.size(); i++) {
-                // Server Block Definitions
-                NbtMap clientBlockDefinition =  clientBlockDefinitions.get(i);
-                this.clientBlockPaletteMap.put(BlockPaletteUtils.createHash(clientBlockDefinition), i);
-
-                if (cardinalFix.contains(clientBlockDefinition.getString("name"))) { // Replace cardinal_direction with facing_direction
-                    int facingDirection = clientBlockDefinition.getCompound("states").getInt("facing_direction");
-                    String cardinal_direction = facing_to_cardinal_directions[facingDirection];
-
-                    NbtMapBuilder fixedStatesBuilder = clientBlockDefinition.getCompound("states").toBuilder();
-                    fixedStatesBuilder.remove("facing_direction");
-                    fixedStatesBuilder.putString("minecraft:cardinal_direction", cardinal_direction);
-                    
-                    NbtMapBuilder fixedClientBlockDefinitionBuilder = clientBlockDefinition.toBuilder();
-                    fixedClientBlockDefinitionBuilder.remove("states");
-                    fixedClientBlockDefinitionBuilder.putCompound("states", fixedStatesBuilder.build());
-
-                    this.clientBlockPaletteMap.put(BlockPaletteUtils.createHash(fixedClientBlockDefinitionBuilder.build()), i); // Add this new fixed cardinal direction one
-                }
-            }
-
-            this.clientBlockDefinitions = new UnknownBlockDefinitionRegistry();
-        } else {
-            log.error(
-                    "Failed to load client block palette. Blocks will appear as runtime IDs in packet traces and creative_content.json!");
-            throw new RuntimeException();
-        }
+        this.blockTranslation.set(this.loadBlockTranslation(configuration, null));
+        this.itemTranslation.set(ItemTranslation.EMPTY.withClientPalettes(this.loadClientItemPalettes(configuration)));
 
-        // Compute the RID replacements
-        for (Map.Entry<Integer, Integer> blockEntry : this.serverBlockPaletteMap.entrySet()) {
-            this.RIDReplacementsServerToClient.put( blockEntry.getValue(), this.clientBlockPaletteMap.getOrDefault(blockEntry.getKey(), 0 ) );
+        if (configuration.getSubChunkCacheSize() > 0) {
+            this.subChunkCache = new SubChunkCache(configuration.getSubChunkCacheSize() * 1024L * 1024L);
         }
-        for (Map.Entry<Integer, Integer> blockEntry : this.clientBlockPaletteMap.entrySet()) {
-            this.RIDReplacementsClientToServer.put( blockEntry.getValue(), this.serverBlockPaletteMap.getOrDefault(blockEntry.getKey(), 0 ) );
+        if (configuration.getTranslationThreads() > 0) {
+            this.translationExecutor = Executors.newFixedThreadPool(configuration.getTranslationThreads(),
+                    new DefaultThreadFactory("proxypass-translation", true));
         }
-        
 
         log.info("Loading server...");
+        // Advertise the newest version the palette chain accepts, so clients of that version are not shown as outdated
+        BedrockCodec advertisedCodec = UPSTREAM_CODECS.get(this.blockTranslation.get().getNewestClientProtocolVersion());
+        if (advertisedCodec != null) {
+            ADVERTISEMENT.protocolVersion(advertisedCodec.getProtocolVersion())
+                    .version(advertisedCodec.getMinecraftVersion());
+        }
         ADVERTISEMENT.ipv4Port(this.proxyAddress.getPort())
                 .ipv6Port(this.proxyAddress.getPort());
         this.server = new ServerBootstrap()
@@ -315,6 +287,7 @@ public class ProxyPass {
 
                     @Override
                     protected void initSession(ProxyServerSession session) {
+                        OutboundBatcher.install(session, session.getOutboundBatcher());
                         session.setPacketHandler(new UpstreamPacketHandler(session, ProxyPass.this, account));
                     }
                 })
@@ -323,9 +296,250 @@ public class ProxyPass {
                 .channel();
         log.info("Bedrock server started on {}", proxyAddress);
 
+        ProxyConsole.start(this);
         loop();
     }
 
+    /**
+     * Sets up the palette chain and the block state rules it is compiled with.
+     */
+    private BlockPaletteChain loadPaletteChain(Configuration configuration) throws IOException {
+        Path rulesPath = dataDir.resolve(BLOCK_STATE_RULES);
+        if (Files.notExists(rulesPath)) {
+            Files.copy(ProxyPass.class.getClassLoader().getResourceAsStream(BLOCK_STATE_RULES), rulesPath);
+        }
+
+        BlockPaletteChain paletteChain = new BlockPaletteChain(configuration.getPaletteChain(), BlockStateRules.load(rulesPath));
+        if (paletteChain.getServerVersion().getProtocolVersion() != CLIENT_PROTOCOL_VERSION) {
+            log.warn("The last palette of the palette chain is for protocol {}, but the destination server is joined with protocol {}",
+                    paletteChain.getServerVersion().getProtocolVersion(), CLIENT_PROTOCOL_VERSION);
+        }
+        for (PaletteVersion version : paletteChain.getClientVersions()) {
+            if (!UPSTREAM_CODECS.containsKey(version.getProtocolVersion())) {
+                throw new IllegalArgumentException("Unsupported client protocol version in the palette chain: " + version.getProtocolVersion());
+            }
+        }
+        return paletteChain;
+    }
+
+    /**
+     * Checksum of the server palette and the rule file, shared by the tables of every client version.
+     */
+    private long serverChecksum(BlockPaletteChain paletteChain) throws IOException {
+        return TranslationTableFile.combine(TranslationTableFile.checksum(dataDir.resolve(paletteChain.getServerVersion().getPalette())),
+                TranslationTableFile.checksum(dataDir.resolve(BLOCK_STATE_RULES)));
+    }
+
+    /**
+     * Builds the palette chain, its translation tables and the block definition registries from the current files.
+     *
+     * @param previous translation in use, whose canonical block definitions are reused, or null at startup
+     */
+    private BlockTranslation loadBlockTranslation(Configuration configuration, BlockTranslation previous) throws IOException {
+        BlockPaletteChain paletteChain = this.loadPaletteChain(configuration);
+        Int2ObjectMap<RuntimeIdTranslationTable> tables = this.loadBlockTranslationTables(paletteChain);
+
+        // Definitions are preallocated for the server palette and for the largest client palette
+        int serverPaletteSize = 0;
+        int clientPaletteSize = 0;
+        for (RuntimeIdTranslationTable table : tables.values()) {
+            serverPaletteSize = Math.max(serverPaletteSize, table.getServerPaletteSize());
+            clientPaletteSize = Math.max(clientPaletteSize, table.getClientPaletteSize());
+        }
+        return new BlockTranslation(paletteChain, tables,
+                new UnknownBlockDefinitionRegistry(serverPaletteSize,
+                        previous == null ? null : (UnknownBlockDefinitionRegistry) previous.getServerBlockDefinitions()),
+                new UnknownBlockDefinitionRegistry(clientPaletteSize,
+                        previous == null ? null : (UnknownBlockDefinitionRegistry) previous.getClientBlockDefinitions()),
+                previous);
+    }
+
+    /**
+     * Rebuilds the block translation in the background from the palette chain in the configuration file, the rule file
+     * and the palettes, then swaps it in. Sessions keep running and use the new tables from their next packet on.
+     *
+     * @return false if a reload is already running
+     */
+    public boolean reloadBlockTranslation() {
+        if (!this.reloading.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Thread thread = new Thread(() -> {
+            try {
+                long start = System.nanoTime();
+                Configuration configuration = Configuration.load(Paths.get(".").resolve("config.yml"));
+                BlockTranslation current = this.blockTranslation.get();
+                BlockTranslation translation = this.loadBlockTranslation(configuration, current).retainRemovedTables(current);
+                Int2ObjectMap<ItemPalette> clientItemPalettes = this.loadClientItemPalettes(configuration);
+
+                BlockTranslation previous = this.blockTranslation.getAndSet(translation);
+                // Players keep the item IDs they joined with, the new item palettes apply from the next join on
+                this.itemTranslation.updateAndGet(items -> items.withClientPalettes(clientItemPalettes));
+                if (this.subChunkCache != null) {
+                    this.subChunkCache.clear(); // Translated with the previous tables
+                }
+
+                log.info("Reloaded block translation in {}ms", (System.nanoTime() - start) / 1_000_000);
+                translation.describeChanges(previous).forEach(log::info);
+            } catch (Exception e) {
+                log.error("Unable to reload block translation, keeping the current tables", e);
+            } finally {
+                this.reloading.set(false);
+            }
+        }, "proxypass-reload");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Loads the precompiled block translation tables, compiling them again if a palette of the chain or the
+     * block state rules changed since.
+     */
+    private Int2ObjectMap<RuntimeIdTranslationTable> loadBlockTranslationTables(BlockPaletteChain paletteChain) throws IOException {
+        for (PaletteVersion version : paletteChain.getVersions()) {
+            if (Files.notExists(dataDir.resolve(version.getPalette()))) {
+                log.error("Block palette {} is missing from {}. Download it as described in the README", version.getPalette(), dataDir);
+                throw new RuntimeException();
+            }
+        }
+
+        long start = System.nanoTime();
+        long serverChecksum = this.serverChecksum(paletteChain);
+        Int2ObjectMap<RuntimeIdTranslationTable> tables = new Int2ObjectOpenHashMap<>();
+        for (PaletteVersion version : paletteChain.getClientVersions()) {
+            Path tablePath = dataDir.resolve(String.format(BLOCK_TRANSLATION_TABLE, version.getProtocolVersion()));
+            RuntimeIdTranslationTable table = TranslationTableFile.read(tablePath, serverChecksum, paletteChain.clientChecksum(dataDir, version));
+            if (table == null) {
+                return this.compileBlockTranslationTables(paletteChain);
+            }
+            tables.put(version.getProtocolVersion(), table);
+        }
+        log.info("Loaded {} block translation tables in {}ms", tables.size(), (System.nanoTime() - start) / 1_000_000);
+        return tables;
+    }
+
+    /**
+     * Composes the block translation tables from the palette chain and saves them for the next boot.
+     */
+    private Int2ObjectMap<RuntimeIdTranslationTable> compileBlockTranslationTables(BlockPaletteChain paletteChain) throws IOException {
+        long start = System.nanoTime();
+        Int2ObjectMap<RuntimeIdTranslationTable> tables = paletteChain.compile(this::loadBlockPalette, 0);
+
+        long serverChecksum = this.serverChecksum(paletteChain);
+        for (PaletteVersion version : paletteChain.getClientVersions()) {
+            TranslationTableFile.write(dataDir.resolve(String.format(BLOCK_TRANSLATION_TABLE, version.getProtocolVersion())),
+                    tables.get(version.getProtocolVersion()), serverChecksum, paletteChain.clientChecksum(dataDir, version));
+        }
+        log.info("Compiled {} block translation tables in {}ms", tables.size(), (System.nanoTime() - start) / 1_000_000);
+        return tables;
+    }
+
+    /**
+     * Loads the item palettes of the client versions which have one in the palette chain.
+     */
+    private Int2ObjectMap<ItemPalette> loadClientItemPalettes(Configuration configuration) throws IOException {
+        Int2ObjectMap<ItemPalette> palettes = new Int2ObjectOpenHashMap<>();
+        for (PaletteVersion version : configuration.getPaletteChain()) {
+            if (version.getItemPalette() != null) {
+                palettes.put(version.getProtocolVersion(), ItemPalette.load(dataDir.resolve(version.getItemPalette())));
+            }
+        }
+        return palettes;
+    }
+
+    private List<NbtMap> loadBlockPalette(String palette) {
+        // Load block palette, if it exists (taken from GeyserMC)
+        if (this.loadGzipNBT(palette) instanceof NbtMap paletteTag) {
+            return paletteTag.getList("blocks", NbtType.COMPOUND);
+        }
+        log.error("Failed to load block palette {}. Blocks will appear as runtime IDs in packet traces and creative_content.json!", palette);
+        throw new RuntimeException();
+    }
+
+    /**
+     * @return the block translation currently in use, replaced as a whole on reload
+     */
+    public BlockTranslation getBlockTranslation() {
+        return this.blockTranslation.get();
+    }
+
+    /**
+     * @return the item palettes in use, replaced as a whole when the server sends other items or on reload
+     */
+    public ItemTranslation getItemTranslation() {
+        return this.itemTranslation.get();
+    }
+
+    /**
+     * Publishes the items the server sent in its StartGamePacket.
+     *
+     * @return the item translation for those items
+     */
+    public ItemTranslation updateServerItems(Collection<ItemDefinition> definitions) {
+        return this.itemTranslation.updateAndGet(items -> items.withServerItems(definitions));
+    }
+
+    /**
+     * @return block translation table for clients using the given protocol version, or null if it is not supported
+     */
+    public RuntimeIdTranslationTable getBlockTranslationTable(int protocolVersion) {
+        return this.blockTranslation.get().getTable(protocolVersion);
+    }
+
+    public DefinitionRegistry<BlockDefinition> getServerBlockDefinitions() {
+        return this.blockTranslation.get().getServerBlockDefinitions();
+    }
+
+    public DefinitionRegistry<BlockDefinition> getClientBlockDefinitions() {
+        return this.blockTranslation.get().getClientBlockDefinitions();
+    }
+
+    /**
+     * @return codec for clients using the given protocol version, or null if the palette chain does not support it
+     */
+    public BedrockCodec getUpstreamCodec(int protocolVersion) {
+        if (!this.blockTranslation.get().isSupported(protocolVersion)) {
+            return null;
+        }
+        return this.packetPassthrough == null ? UPSTREAM_CODECS.get(protocolVersion) : this.packetPassthrough.getUpstreamCodec(protocolVersion);
+    }
+
+    /**
+     * @return codec to join the destination server with on behalf of a client of the given protocol version
+     */
+    public BedrockCodec getDownstreamCodec(int protocolVersion) {
+        BedrockCodec codec = this.packetPassthrough == null ? null : this.packetPassthrough.getDownstreamCodec(protocolVersion);
+        return codec == null ? CLIENT_CODEC : codec;
+    }
+
+    /**
+     * @return whether batches of undecoded packets may be forwarded without being decompressed
+     */
+    public boolean isForwardingCompressedBatches() {
+        return this.packetPassthrough != null && this.configuration.isCompressedPassthrough()
+                && !this.configuration.isLoggingPackets();
+    }
+
+    /**
+     * @return type of the packets with this ID if they are forwarded without being decoded, otherwise null
+     */
+    public Class<? extends BedrockPacket> getPassthroughPacket(int packetId) {
+        return this.packetPassthrough == null ? null : this.packetPassthrough.getPassthroughPacket(packetId);
+    }
+
+    /**
+     * Decodes a packet which was forwarded without being decoded, for the packet log.
+     *
+     * @param upstream whether the packet was received from the client
+     * @return the decoded packet, which the caller has to release
+     */
+    public BedrockPacket decodePassthroughPacket(BedrockSession session, UnknownPacket packet, boolean upstream) {
+        return this.packetPassthrough.decode(packet, session.getPeer().getCodecHelper(),
+                session.getCodec().getProtocolVersion(), upstream);
+    }
+
     public void newClient(InetSocketAddress socketAddress, Consumer<ProxyClientSession> sessionConsumer) {
         // TODO: Why can only one instance join a server?
         Channel channel = new Bootstrap()
@@ -344,6 +558,7 @@ public class ProxyPass {
                     @Override
                     protected void initSession(ProxyClientSession session) {
                         log.debug("Session init!");
+                        OutboundBatcher.install(session, session.getOutboundBatcher());
                         sessionConsumer.accept(session);
                     }
                 })
@@ -369,6 +584,17 @@ public class ProxyPass {
         // Shutdown
         this.clients.forEach(Channel::disconnect);
         this.server.disconnect();
+
+        if (this.translationExecutor != null) {
+            this.translationExecutor.shutdown();
+        }
+        this.viewDistanceGovernor.stop();
+        log.info("Untranslated chunk payloads: {} truncated, {} malformed, {} unsupported",
+                SubChunkTranslator.getTruncatedPayloads(), SubChunkTranslator.getMalformedPayloads(), SubChunkTranslator.getUnsupportedPayloads());
+        if (this.subChunkCache != null) {
+            log.info("Subchunk cache statistics: {}", this.subChunkCache);
+            this.subChunkCache.clear();
+        }
     }
 
     public void shutdown() {
@@ -0,0 +1,226 @@
+package org.cloudburstmc.proxypass.network.bedrock.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lombok.Getter;
+import lombok.Setter;
+import org.cloudburstmc.protocol.bedrock.data.SubChunkData;
+import org.cloudburstmc.protocol.bedrock.data.SubChunkRequestResult;
+import org.cloudburstmc.protocol.bedrock.packet.ClientCacheMissResponsePacket;
+import org.cloudburstmc.protocol.bedrock.packet.LevelChunkPacket;
+import org.cloudburstmc.protocol.bedrock.packet.SubChunkPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves the client's blob cache from the proxy.
+ * <p>
+ * The server always sends full chunks to the proxy. Once they are translated, the proxy splits them into blobs,
+ * sends the client the XXH64 IDs of the translated blobs and keeps the blobs until the client either acknowledges
+ * them or reports them missing, in which case they are sent in a {@link ClientCacheMissResponsePacket}.
+ * Chunks are sent in full while the number of unresolved blobs is at the configured limit.
+ */
+public class ClientBlobCache {
+
+    private final int maxBlobs;
+    private final Long2ObjectMap<Blob> blobs = new Long2ObjectOpenHashMap<>();
+    @Getter
+    @Setter
+    private volatile boolean enabled;
+
+    public ClientBlobCache(int maxBlobs) {
+        this.maxBlobs = maxBlobs;
+    }
+
+    /**
+     * Converts a translated full chunk column to its cached form.
+     *
+     * @return true if the packet now references blobs, false if it was left untouched
+     */
+    public boolean cacheColumn(LevelChunkPacket packet, int dimension) {
+        if (!this.enabled || packet.isCachingEnabled() || packet.isRequestSubChunks() || packet.getSubChunksLength() <= 0) {
+            return false;
+        }
+
+        ByteBuf data = packet.getData();
+        int[] blobEnds = new int[packet.getSubChunksLength() + 1];
+        SubChunkParser parser = SubChunkParser.get().reset(data);
+        try {
+            for (int section = 0; section < packet.getSubChunksLength(); section++) {
+                if (parser.skipSubChunkStorages() != SubChunkParser.OK) {
+                    return false;
+                }
+                blobEnds[section] = parser.index();
+            }
+            if (parser.skipBiomes(getBiomeCount(dimension)) != SubChunkParser.OK) {
+                return false;
+            }
+            blobEnds[blobEnds.length - 1] = parser.index();
+        } finally {
+            parser.clear();
+        }
+
+        synchronized (this) {
+            if (this.blobs.size() + blobEnds.length > this.maxBlobs) {
+                return false;
+            }
+            LongSet stored = new LongOpenHashSet(blobEnds.length);
+            int blobStart = data.readerIndex();
+            for (int blobEnd : blobEnds) {
+                packet.getBlobIds().add(this.store(data.slice(blobStart, blobEnd - blobStart), stored));
+                blobStart = blobEnd;
+            }
+        }
+
+        // Only the border blocks and block entities are left in the payload
+        int payloadStart = blobEnds[blobEnds.length - 1];
+        packet.setData(data.retainedSlice(payloadStart, data.writerIndex() - payloadStart));
+        packet.setCachingEnabled(true);
+        data.release();
+        return true;
+    }
+
+    /**
+     * Converts the translated subchunks of a packet to their cached form.
+     *
+     * @return true if the packet now references blobs, false if it was left untouched
+     */
+    public boolean cacheSubChunks(SubChunkPacket packet) {
+        if (!this.enabled || packet.isCacheEnabled()) {
+            return false;
+        }
+
+        List<SubChunkData> subChunks = new ArrayList<>();
+        IntList storageEnds = new IntArrayList(packet.getSubChunks().size());
+        SubChunkParser parser = SubChunkParser.get();
+        try {
+            for (SubChunkData subChunk : packet.getSubChunks()) {
+                ByteBuf data = subChunk.getData();
+                if (subChunk.getResult() != SubChunkRequestResult.SUCCESS || data == null || !data.isReadable()) {
+                    continue;
+                }
+                if (parser.reset(data).skipSubChunkStorages() != SubChunkParser.OK) {
+                    return false;
+                }
+                subChunks.add(subChunk);
+                storageEnds.add(parser.index());
+            }
+        } finally {
+            parser.clear();
+        }
+
+        synchronized (this) {
+            if (this.blobs.size() + subChunks.size() > this.maxBlobs) {
+                return false;
+            }
+            LongSet stored = new LongOpenHashSet(subChunks.size());
+            for (int i = 0; i < subChunks.size(); i++) {
+                SubChunkData subChunk = subChunks.get(i);
+                ByteBuf data = subChunk.getData();
+                int storageEnd = storageEnds.getInt(i);
+
+                subChunk.setBlobId(this.store(data.slice(data.readerIndex(), storageEnd - data.readerIndex()), stored));
+                // Only the block entities are left in the payload
+                subChunk.setData(data.retainedSlice(storageEnd, data.writerIndex() - storageEnd));
+                data.release();
+            }
+        }
+        packet.setCacheEnabled(true);
+        return true;
+    }
+
+    /**
+     * Resolves the blobs the client reported as present or missing.
+     *
+     * @return response containing the missing blobs, or null if none of them are held by the proxy
+     */
+    public synchronized ClientCacheMissResponsePacket resolve(LongList acks, LongList naks) {
+        for (int i = 0; i < acks.size(); i++) {
+            this.release(acks.getLong(i));
+        }
+
+        ClientCacheMissResponsePacket response = null;
+        for (int i = 0; i < naks.size(); i++) {
+            long blobId = naks.getLong(i);
+            Blob blob = this.blobs.get(blobId);
+            if (blob == null) {
+                continue;
+            }
+            if (response == null) {
+                response = new ClientCacheMissResponsePacket();
+            }
+            response.getBlobs().put(blobId, blob.data.retainedDuplicate());
+            this.release(blobId);
+        }
+        return response;
+    }
+
+    public synchronized int getSize() {
+        return this.blobs.size();
+    }
+
+    public synchronized void clear() {
+        for (Blob blob : this.blobs.values()) {
+            blob.data.release();
+        }
+        this.blobs.clear();
+    }
+
+    /**
+     * Stores a blob and returns its ID. The client resolves every blob ID of a packet once, so a blob is only
+     * referenced once per packet, however often it occurs in it.
+     * <p>
+     * New blobs are copied into a buffer of their own. They outlive their packet, and a slice would keep the whole
+     * chunk or batch they were cut from alive until every blob sharing it is resolved.
+     *
+     * @param data   blob, not retained
+     * @param stored IDs of the blobs already stored for the same packet
+     */
+    private long store(ByteBuf data, LongSet stored) {
+        long blobId = XXHash64.hash(data);
+        Blob blob = this.blobs.get(blobId);
+        if (blob == null) {
+            ByteBuf copy = ByteBufAllocator.DEFAULT.directBuffer(data.readableBytes());
+            copy.writeBytes(data, data.readerIndex(), data.readableBytes());
+            this.blobs.put(blobId, new Blob(copy));
+            stored.add(blobId);
+        } else if (stored.add(blobId)) {
+            // The client was already sent this blob and has not resolved it yet
+            blob.references++;
+        }
+        return blobId;
+    }
+
+    private void release(long blobId) {
+        Blob blob = this.blobs.get(blobId);
+        if (blob != null && --blob.references == 0) {
+            this.blobs.remove(blobId);
+            blob.data.release();
+        }
+    }
+
+    private static int getBiomeCount(int dimension) {
+        return switch (dimension) {
+            case 1 -> 8; // Nether
+            case 2 -> 16; // The End
+            default -> 24; // Overworld
+        };
+    }
+
+    private static class Blob {
+        private final ByteBuf data;
+        private int references = 1;
+
+        private Blob(ByteBuf data) {
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.cloudburstmc.proxypass.network.bedrock.chunk;
+
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Process-wide cache of translated subchunks, shared by every session.
+ * <p>
+ * Entries are keyed by a 64-bit content hash of the untranslated subchunk and the client protocol version it was
+ * translated for, as clients of different versions need different translations. The length and an independent XXH64
+ * hash of the untranslated bytes are kept alongside the translation, so hash collisions are detected instead of
+ * sending the wrong chunk without keeping the untranslated bytes around. The translation is cached as the translator
+ * returned it, without copying it. The cache is bounded by the total bytes of the translations it holds and evicts the
+ * least recently used entries first.
+ */
+public class SubChunkCache {
+
+    private final long maxBytes;
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+    private long usedBytes;
+    /**
+     * Bumped by {@link #clear()}, so translations that were in flight while the cache was cleared are not cached.
+     */
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SubChunkCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the translation of a subchunk, translating and caching it on a miss.
+     *
+     * @param data            untranslated subchunk, left untouched
+     * @param protocolVersion client protocol version the subchunk is translated for
+     * @param translator      translates a subchunk into a new buffer owned by the caller
+     * @return translated subchunk owned by the caller
+     */
+    public ByteBuf getOrTranslate(ByteBuf data, int protocolVersion, UnaryOperator<ByteBuf> translator) {
+        long hash = mix(hash(data), protocolVersion);
+        int length = data.readableBytes();
+        long checkHash = XXHash64.hash(data);
+        long generation;
+
+        synchronized (this) {
+            generation = this.generation;
+            Entry entry = this.entries.getAndMoveToLast(hash);
+            if (entry != null && entry.matches(protocolVersion, length, checkHash)) {
+                this.hits++;
+                return entry.translated.retainedDuplicate();
+            }
+            this.misses++;
+        }
+
+        ByteBuf translated = translator.apply(data);
+        if (translated.readableBytes() > this.maxBytes) {
+            return translated;
+        }
+
+        synchronized (this) {
+            if (generation != this.generation) {
+                return translated;
+            }
+            Entry entry = new Entry(protocolVersion, length, checkHash, translated);
+            Entry previous = this.entries.putAndMoveToLast(hash, entry);
+            if (previous != null) {
+                this.remove(previous);
+            }
+            this.usedBytes += entry.size();
+
+            while (this.usedBytes > this.maxBytes && !this.entries.isEmpty()) {
+                this.remove(this.entries.removeFirst());
+                this.evictions++;
+            }
+            return entry.translated.retainedDuplicate();
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.values().forEach(this::remove);
+        this.entries.clear();
+        this.generation++;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SubChunkCache(entries=" + entries.size() + ", usedBytes=" + usedBytes + ", maxBytes=" + maxBytes +
+                ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ")";
+    }
+
+    private void remove(Entry entry) {
+        this.usedBytes -= entry.size();
+        this.release(entry);
+    }
+
+    private void release(Entry entry) {
+        entry.translated.release();
+    }
+
+    /**
+     * 64-bit content hash over the readable bytes of a buffer, eight bytes at a time.
+     */
+    static long hash(ByteBuf buffer) {
+        int index = buffer.readerIndex();
+        int end = buffer.writerIndex();
+
+        long hash = 0x9E3779B97F4A7C15L ^ (end - index);
+        for (; index + Long.BYTES <= end; index += Long.BYTES) {
+            hash = mix(hash, buffer.getLongLE(index));
+        }
+        for (; index < end; index++) {
+            hash = mix(hash, buffer.getByte(index));
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash ^ (value * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B97F4A7C15L;
+    }
+
+    private record Entry(int protocolVersion, int length, long checkHash, ByteBuf translated) {
+
+        boolean matches(int protocolVersion, int length, long checkHash) {
+            return this.protocolVersion == protocolVersion && this.length == length && this.checkHash == checkHash;
+        }
+
+        long size() {
+            return translated.readableBytes();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.cloudburstmc.proxypass.network.bedrock.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * Reusable, bounds-checked cursor over network subchunks and chunk columns.
+ * <p>
+ * The parser never throws on malformed input and never allocates: every read returns one of the status codes below
+ * and leaves the value it read in {@link #value()}. The cursor works on absolute indexes and never moves the reader
+ * index of the underlying buffer. Use {@link #get()} to borrow the instance owned by the current thread.
+ */
+public final class SubChunkParser {
+
+    public static final int OK = 0;
+    public static final int TRUNCATED = 1;
+    public static final int MALFORMED = 2;
+    public static final int UNSUPPORTED_VERSION = 3;
+
+    private static final int BLOCKS_PER_SUBCHUNK = 4096;
+    private static final int COPY_LAST_BITS_PER_BLOCK = 127;
+
+    private static final FastThreadLocal<SubChunkParser> PARSERS = new FastThreadLocal<>() {
+        @Override
+        protected SubChunkParser initialValue() {
+            return new SubChunkParser();
+        }
+    };
+
+    private ByteBuf buffer;
+    private int index;
+    private int end;
+    private int value;
+
+    private SubChunkParser() {
+    }
+
+    public static SubChunkParser get() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Points the cursor at the readable bytes of {@code buffer}.
+     */
+    public SubChunkParser reset(ByteBuf buffer) {
+        this.buffer = buffer;
+        this.index = buffer.readerIndex();
+        this.end = buffer.writerIndex();
+        return this;
+    }
+
+    /**
+     * Drops the reference to the current buffer.
+     */
+    public void clear() {
+        this.buffer = null;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int value() {
+        return value;
+    }
+
+    public int peekUnsignedByte() {
+        if (this.index >= this.end) {
+            return TRUNCATED;
+        }
+        this.value = this.buffer.getUnsignedByte(this.index);
+        return OK;
+    }
+
+    public int readUnsignedByte() {
+        int status = this.peekUnsignedByte();
+        if (status == OK) {
+            this.index++;
+        }
+        return status;
+    }
+
+    public int skip(int length) {
+        if (length < 0 || this.end - this.index < length) {
+            return TRUNCATED;
+        }
+        this.index += length;
+        return OK;
+    }
+
+    /**
+     * Reads a zigzag encoded VarInt.
+     */
+    public int readVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            if (this.index >= this.end) {
+                return TRUNCATED;
+            }
+            byte b = this.buffer.getByte(this.index++);
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                this.value = (result >>> 1) ^ -(result & 1);
+                return OK;
+            }
+        }
+        return MALFORMED;
+    }
+
+    /**
+     * Reads the header of a v8/v9 subchunk. The value is the number of storages.
+     */
+    public int readSubChunkHeader() {
+        int status = this.readUnsignedByte();
+        if (status != OK) {
+            return status;
+        }
+        int subChunkVersion = this.value;
+        if (subChunkVersion != 8 && subChunkVersion != 9) {
+            return UNSUPPORTED_VERSION;
+        }
+
+        if ((status = this.readUnsignedByte()) != OK) {
+            return status;
+        }
+        int storagesCount = this.value;
+        if (subChunkVersion == 9 && (status = this.skip(1)) != OK) { // Subchunk Y index
+            return status;
+        }
+        this.value = storagesCount;
+        return OK;
+    }
+
+    /**
+     * Reads a paletted storage up to its first palette entry. The value is the palette size.
+     */
+    public int readStorageHeader() {
+        int status = this.readUnsignedByte();
+        if (status != OK) {
+            return status;
+        }
+        int bitsPerBlock = this.value >> 1;
+        if (bitsPerBlock == 0) {
+            // A single-valued storage has no words and no palette size, just one palette entry
+            this.value = 1;
+            return OK;
+        }
+        if (bitsPerBlock > Integer.SIZE) {
+            return MALFORMED;
+        }
+
+        int blocksPerWord = Integer.SIZE / bitsPerBlock;
+        int wordsCount = (BLOCKS_PER_SUBCHUNK + blocksPerWord - 1) / blocksPerWord;
+        if ((status = this.skip(wordsCount * Integer.BYTES)) != OK || (status = this.readVarInt()) != OK) {
+            return status;
+        }
+        return this.value < 0 ? MALFORMED : OK;
+    }
+
+    /**
+     * Skips a whole paletted storage.
+     */
+    public int skipStorage() {
+        int status = this.readStorageHeader();
+        if (status != OK) {
+            return status;
+        }
+        for (int i = 0, paletteSize = this.value; i < paletteSize; i++) {
+            if ((status = this.readVarInt()) != OK) {
+                return status;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Skips the header and storages of a v8/v9 subchunk, leaving the cursor on its block entities.
+     */
+    public int skipSubChunkStorages() {
+        int status = this.readSubChunkHeader();
+        if (status != OK) {
+            return status;
+        }
+        for (int y = 0, storagesCount = this.value; y < storagesCount; y++) {
+            if ((status = this.skipStorage()) != OK) {
+                return status;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Skips the biome storages of a chunk column.
+     */
+    public int skipBiomes(int biomeCount) {
+        int status;
+        for (int i = 0; i < biomeCount; i++) {
+            if ((status = this.peekUnsignedByte()) != OK) {
+                return status;
+            }
+            // The storage is a copy of the previous one and has no data
+            if (this.value >> 1 == COPY_LAST_BITS_PER_BLOCK) {
+                this.index++;
+                continue;
+            }
+            if ((status = this.skipStorage()) != OK) {
+                return status;
+            }
+        }
+        return OK;
+    }
+}
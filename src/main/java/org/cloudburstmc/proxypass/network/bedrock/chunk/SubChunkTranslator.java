@@ -0,0 +1,203 @@
+package org.cloudburstmc.proxypass.network.bedrock.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import lombok.experimental.UtilityClass;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.proxypass.network.bedrock.translation.RuntimeIdTranslationTable;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkParser.MALFORMED;
+import static org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkParser.OK;
+import static org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkParser.TRUNCATED;
+
+/**
+ * Rewrites the block runtime IDs of network subchunks and chunk columns.
+ * <p>
+ * Only the palette entries of a subchunk change between versions, so the translated subchunk is assembled as a
+ * composite buffer: the packed block words and the block entity tail stay retained slices of the original buffer
+ * and only the rewritten palettes are materialized.
+ * <p>
+ * Truncated or corrupt payloads never throw. They are counted and forwarded untranslated.
+ * <p>
+ * Subchunk parser based on code from <a href="https://github.com/WaterdogPE/Chunky">Chunky</a>
+ */
+@Log4j2
+@UtilityClass
+public class SubChunkTranslator {
+
+    private static final int BLOCKS_PER_SUBCHUNK = 4096;
+
+    private static final LongAdder TRUNCATED_PAYLOADS = new LongAdder();
+    private static final LongAdder MALFORMED_PAYLOADS = new LongAdder();
+    private static final LongAdder UNSUPPORTED_PAYLOADS = new LongAdder();
+
+    /**
+     * Translates a single subchunk.
+     * The returned buffer is owned by the caller; the original buffer is left untouched and still has to be released
+     * by its owner.
+     *
+     * @param alloc            allocator used for the rewritten palettes
+     * @param data             untranslated subchunk
+     * @param translationTable runtime ID table to apply to the palette
+     * @return translated subchunk, or the retained original if the subchunk could not be translated
+     */
+    public static ByteBuf translate(ByteBufAllocator alloc, ByteBuf data, RuntimeIdTranslationTable translationTable) {
+        int subChunkVersion = data.getUnsignedByte(data.readerIndex());
+
+        if (subChunkVersion == 9 || subChunkVersion == 8) {
+            int storagesCount = data.readableBytes() > 1 ? data.getUnsignedByte(data.readerIndex() + 1) : 0;
+            CompositeByteBuf result = alloc.compositeDirectBuffer(storagesCount * 2 + 1);
+            return finish(result, data, translatePaletted(result, alloc, data, 1, translationTable));
+        } else if (subChunkVersion == 1) {
+            log.debug("Subchunk v1 is not supported, sending it untranslated");
+        } else if (subChunkVersion >= 0 && subChunkVersion <= 7) {
+            CompositeByteBuf result = alloc.compositeDirectBuffer(3);
+            return finish(result, data, translateLegacy(result, alloc, data, translationTable));
+        } else {
+            log.debug("Unhandled subchunk version: {}", subChunkVersion);
+        }
+        UNSUPPORTED_PAYLOADS.increment();
+        return data.retain();
+    }
+
+    /**
+     * Translates the block palettes of a full chunk column as sent in a {@code LevelChunkPacket}.
+     * Only the section storages are rewritten; the biomes, border blocks and block entities that follow them contain
+     * no block runtime IDs and are kept as a single retained slice.
+     *
+     * @param alloc            allocator used for the rewritten palettes
+     * @param data             untranslated chunk column
+     * @param sectionCount     number of sections in the column
+     * @param translationTable runtime ID table to apply to the palettes
+     * @return translated chunk column, or the retained original if the column could not be translated
+     */
+    public static ByteBuf translateColumn(ByteBufAllocator alloc, ByteBuf data, int sectionCount, RuntimeIdTranslationTable translationTable) {
+        // Sections rarely have more than two storages, the composite consolidates itself if they do
+        CompositeByteBuf result = alloc.compositeDirectBuffer(sectionCount * 4 + 1);
+        return finish(result, data, translatePaletted(result, alloc, data, sectionCount, translationTable));
+    }
+
+    /**
+     * @return number of payloads that ended before their last storage
+     */
+    public static long getTruncatedPayloads() {
+        return TRUNCATED_PAYLOADS.sum();
+    }
+
+    /**
+     * @return number of payloads containing invalid VarInts or storage headers
+     */
+    public static long getMalformedPayloads() {
+        return MALFORMED_PAYLOADS.sum();
+    }
+
+    /**
+     * @return number of payloads using a subchunk version that can not be translated
+     */
+    public static long getUnsupportedPayloads() {
+        return UNSUPPORTED_PAYLOADS.sum();
+    }
+
+    private static ByteBuf finish(CompositeByteBuf result, ByteBuf data, int status) {
+        if (status == OK) {
+            return result;
+        }
+
+        switch (status) {
+            case TRUNCATED -> TRUNCATED_PAYLOADS.increment();
+            case MALFORMED -> MALFORMED_PAYLOADS.increment();
+            default -> UNSUPPORTED_PAYLOADS.increment();
+        }
+        result.release();
+        return data.retain();
+    }
+
+    /**
+     * Appends {@code subChunkCount} consecutive v8/v9 subchunks followed by the untouched remainder of {@code data}.
+     * Every storage contributes an unchanged header/words run and a rewritten palette.
+     */
+    private static int translatePaletted(CompositeByteBuf result, ByteBufAllocator alloc, ByteBuf data, int subChunkCount,
+                                         RuntimeIdTranslationTable translationTable) {
+        SubChunkParser parser = SubChunkParser.get().reset(data);
+        ByteBuf palettes = alloc.directBuffer();
+        try {
+            int status;
+            int unchangedFrom = parser.index();
+            for (int subChunk = 0; subChunk < subChunkCount; subChunk++) {
+                if ((status = parser.readSubChunkHeader()) != OK) {
+                    return status;
+                }
+
+                for (int y = 0, storagesCount = parser.value(); y < storagesCount; y++) {
+                    if ((status = parser.readStorageHeader()) != OK) {
+                        return status;
+                    }
+                    result.addComponent(true, data.retainedSlice(unchangedFrom, parser.index() - unchangedFrom));
+
+                    int paletteStart = palettes.writerIndex();
+                    for (int i = 0, paletteSize = parser.value(); i < paletteSize; i++) {
+                        if ((status = parser.readVarInt()) != OK) {
+                            return status;
+                        }
+                        writeVarInt(palettes, translationTable.toClient(parser.value()));
+                    }
+                    result.addComponent(true, palettes.retainedSlice(paletteStart, palettes.writerIndex() - paletteStart));
+
+                    unchangedFrom = parser.index();
+                }
+            }
+
+            // Block entities, or biomes, border blocks and block entities for a column
+            appendTail(result, data, unchangedFrom);
+            return OK;
+        } finally {
+            palettes.release();
+            parser.clear();
+        }
+    }
+
+    private static int translateLegacy(CompositeByteBuf result, ByteBufAllocator alloc, ByteBuf data, RuntimeIdTranslationTable translationTable) {
+        int start = data.readerIndex();
+        if (data.readableBytes() < 1 + BLOCKS_PER_SUBCHUNK) {
+            return TRUNCATED;
+        }
+
+        ByteBuf blocks = alloc.directBuffer(BLOCKS_PER_SUBCHUNK);
+        for (int i = 0; i < BLOCKS_PER_SUBCHUNK; i++) {
+            short blockRID = data.getUnsignedByte(start + 1 + i);
+            blocks.writeByte(translationTable.toClient(blockRID));
+        }
+
+        result.addComponent(true, data.retainedSlice(start, 1));
+        result.addComponent(true, blocks);
+        appendTail(result, data, start + 1 + BLOCKS_PER_SUBCHUNK);
+        return OK;
+    }
+
+    private static void appendTail(CompositeByteBuf result, ByteBuf data, int from) {
+        if (data.writerIndex() > from) {
+            result.addComponent(true, data.retainedSlice(from, data.writerIndex() - from));
+        }
+    }
+
+    public static void writeVarInt(ByteBuf buffer, int value) {
+        long longValue = ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+
+        // Peel the one and two byte count cases explicitly as they are the most common VarInt sizes
+        // that the server will write, to improve inlining.
+        if ((longValue & ~0x7FL) == 0) {
+            buffer.writeByte((byte) longValue);
+        } else if ((longValue & ~0x3FFFL) == 0) {
+            buffer.writeShortLE((int) ((longValue & 0x7FL | 0x80L) | (longValue >>> 7) << 8));
+        } else {
+            while ((longValue & ~0x7FL) != 0) {
+                buffer.writeByte((int) (longValue & 0x7FL | 0x80L));
+                longValue >>>= 7;
+            }
+            buffer.writeByte((int) longValue);
+        }
+    }
+}
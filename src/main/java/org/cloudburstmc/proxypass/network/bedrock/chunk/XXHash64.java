@@ -0,0 +1,84 @@
+package org.cloudburstmc.proxypass.network.bedrock.chunk;
+
+import io.netty.buffer.ByteBuf;
+import lombok.experimental.UtilityClass;
+
+/**
+ * XXH64 over the readable bytes of a {@link ByteBuf}, as used by the client for blob cache IDs.
+ */
+@UtilityClass
+public class XXHash64 {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    public static long hash(ByteBuf buffer) {
+        return hash(buffer, buffer.readerIndex(), buffer.readableBytes(), 0);
+    }
+
+    public static long hash(ByteBuf buffer, int index, int length, long seed) {
+        int end = index + length;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+
+            int limit = end - 32;
+            do {
+                v1 = round(v1, buffer.getLongLE(index));
+                v2 = round(v2, buffer.getLongLE(index + 8));
+                v3 = round(v3, buffer.getLongLE(index + 16));
+                v4 = round(v4, buffer.getLongLE(index + 24));
+                index += 32;
+            } while (index <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = seed + PRIME64_5;
+        }
+
+        hash += length;
+
+        for (; index + 8 <= end; index += 8) {
+            hash ^= round(0, buffer.getLongLE(index));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+        }
+        if (index + 4 <= end) {
+            hash ^= buffer.getUnsignedIntLE(index) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            index += 4;
+        }
+        for (; index < end; index++) {
+            hash ^= buffer.getUnsignedByte(index) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+}
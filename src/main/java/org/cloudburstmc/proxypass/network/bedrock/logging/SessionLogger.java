@@ -3,9 +3,11 @@ package org.cloudburstmc.proxypass.network.bedrock.logging;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.protocol.bedrock.BedrockSession;
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.bedrock.packet.UnknownPacket;
 import org.cloudburstmc.proxypass.ProxyPass;
 import org.jose4j.json.internal.json_simple.JSONObject;
 
@@ -95,6 +97,22 @@ public class SessionLogger {
     }
 
     public void logPacket(BedrockSession session, BedrockPacket packet, boolean upstream) {
+        if (packet instanceof UnknownPacket unknown) {
+            Class<? extends BedrockPacket> packetClass = proxy.getPassthroughPacket(unknown.getPacketId());
+            if (packetClass != null) {
+                // Forwarded without being decoded, only decode it if it is written to the log
+                boolean logged = proxy.getConfiguration().isLoggingPackets() || session.isLogging() && log.isTraceEnabled();
+                if (logged && !proxy.isIgnoredPacket(packetClass)) {
+                    BedrockPacket decoded = proxy.decodePassthroughPacket(session, unknown, upstream);
+                    try {
+                        logPacket(session, decoded, upstream);
+                    } finally {
+                        ReferenceCountUtil.release(decoded);
+                    }
+                }
+                return;
+            }
+        }
         String logPrefix = getLogPrefix(upstream);
         if (!proxy.isIgnoredPacket(packet.getClass())) {
             if (session.isLogging() && log.isTraceEnabled()) {
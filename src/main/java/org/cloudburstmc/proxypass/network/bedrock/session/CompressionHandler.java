@@ -0,0 +1,249 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.compression.Snappy;
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.data.PacketCompressionAlgorithm;
+import org.cloudburstmc.protocol.bedrock.netty.codec.batch.BedrockBatchDecoder;
+import org.cloudburstmc.protocol.common.util.VarInts;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses the batches of one leg of a connection, replacing the compression of the protocol
+ * library so the proxy controls the level and the threshold.
+ * <p>
+ * Zlib batches smaller than the threshold are stored instead of compressed, which is still a valid deflate stream for
+ * the receiver. Snappy is cheap enough to be used for every batch.
+ * <p>
+ * An inbound batch which only holds packets the codec of the session leaves undecoded is forwarded to the other leg
+ * still compressed, if that leg uses the same algorithm and nothing is held back from it. It is written right after the
+ * packets queued on the other leg, so the packet order is kept.
+ */
+public class CompressionHandler extends MessageToMessageCodec<ByteBuf, ByteBuf> {
+
+    public static final String NAME = "proxypass-compression";
+    private static final int MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 8192;
+
+    private final BedrockSession session;
+    private final Direction direction;
+    @Getter
+    private final PacketCompressionAlgorithm algorithm;
+    private final int level;
+    private final int threshold;
+    private final boolean forwardCompressed;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final Snappy snappy;
+    private ChannelHandlerContext ctx;
+
+    private CompressionHandler(BedrockSession session, Direction direction, PacketCompressionAlgorithm algorithm,
+                               int level, int threshold, boolean forwardCompressed) {
+        this.session = session;
+        this.direction = direction;
+        this.algorithm = algorithm;
+        this.level = level;
+        this.threshold = threshold;
+        this.forwardCompressed = forwardCompressed;
+        boolean zlib = algorithm == PacketCompressionAlgorithm.ZLIB;
+        this.deflater = zlib ? new Deflater(level, true) : null;
+        this.inflater = zlib ? new Inflater(true) : null;
+        this.snappy = zlib ? null : new Snappy();
+    }
+
+    /**
+     * Enables compression of a session.
+     *
+     * @param direction         direction of the packets the session receives
+     * @param level             zlib compression level, 1 to 9
+     * @param threshold         zlib batches smaller than this many bytes are stored instead of compressed
+     * @param forwardCompressed whether batches of undecoded packets may be forwarded without decompressing them
+     */
+    public static <T extends BedrockSession & ProxySession> void install(T session, Direction direction,
+                                                                         PacketCompressionAlgorithm algorithm,
+                                                                         int level, int threshold, boolean forwardCompressed) {
+        if (algorithm != PacketCompressionAlgorithm.ZLIB && algorithm != PacketCompressionAlgorithm.SNAPPY) {
+            session.setCompression(algorithm); // Not one we can handle, leave it to the protocol library
+            return;
+        }
+        session.getPeer().getChannel().pipeline().addBefore(BedrockBatchDecoder.NAME, NAME,
+                new CompressionHandler(session, direction, algorithm, level, threshold, forwardCompressed));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (this.deflater != null) {
+            this.deflater.end();
+            this.inflater.end();
+        }
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        out.add(this.snappy == null ? this.deflate(ctx.alloc(), msg) : this.snappyEncode(ctx.alloc(), msg));
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        ByteBuf decompressed = this.snappy == null ? this.inflate(ctx.alloc(), msg) : this.snappyDecode(ctx.alloc(), msg);
+        try {
+            if (this.forwardCompressed && this.tryForwardCompressed(msg, decompressed)) {
+                return;
+            }
+            out.add(decompressed.retain());
+        } finally {
+            decompressed.release();
+        }
+    }
+
+    /**
+     * Writes a batch compressed by the other leg, after everything already queued on this leg.
+     */
+    private void writeCompressed(ByteBuf batch) {
+        this.ctx.channel().eventLoop().execute(() -> {
+            this.session.getPeer().flush();
+            this.ctx.writeAndFlush(batch);
+        });
+    }
+
+    private boolean tryForwardCompressed(ByteBuf compressed, ByteBuf batch) {
+        ProxySession proxySession = (ProxySession) this.session;
+        BedrockSession target = proxySession.getSendSession();
+        if (target == null || this.session.isLogging() || target.isLogging() || !this.isUndecoded(batch)) {
+            return false; // Packets of sessions logging their traffic have to pass the session to be logged
+        }
+        CompressionHandler targetCompression = (CompressionHandler) target.getPeer().getChannel().pipeline().get(NAME);
+        if (targetCompression == null || targetCompression.algorithm != this.algorithm) {
+            return false;
+        }
+        if (proxySession instanceof ProxyClientSession client) {
+            if (client.getTranslationQueue() != null && client.getTranslationQueue().getDepth() > 0) {
+                return false; // Would overtake packets still being translated
+            }
+            if (client.getOutboundScheduler() != null && !client.getOutboundScheduler().isEmpty()) {
+                return false; // Would overtake packets held until the client keeps up, or paced chunks
+            }
+        }
+        if (!target.getPeer().getChannel().isWritable()) {
+            return false; // The scheduler has to see the packets while the client cannot keep up
+        }
+
+        targetCompression.writeCompressed(compressed.retain());
+        proxySession.getProxyPass().getPacketTranslators().countCompressedPassthrough(this.direction);
+        return true;
+    }
+
+    /**
+     * @return whether the codec of the session leaves every packet of the batch undecoded
+     */
+    private boolean isUndecoded(ByteBuf batch) {
+        ByteBuf buffer = batch.duplicate();
+        if (!buffer.isReadable()) {
+            return false;
+        }
+        while (buffer.isReadable()) {
+            int length = VarInts.readUnsignedInt(buffer);
+            if (length <= 0 || length > buffer.readableBytes()) {
+                return false;
+            }
+            int end = buffer.readerIndex() + length;
+            int header = VarInts.readUnsignedInt(buffer);
+            if ((header >>> 10) != 0 || PacketPassthrough.isDecoded(this.session.getCodec(), header & 0x3ff)) {
+                return false; // Sub-client packet or needed by a translator
+            }
+            buffer.readerIndex(end);
+        }
+        return true;
+    }
+
+    private ByteBuf deflate(ByteBufAllocator alloc, ByteBuf in) {
+        this.deflater.setLevel(in.readableBytes() < this.threshold ? Deflater.NO_COMPRESSION : this.level);
+        this.deflater.setInput(in.nioBuffer());
+        this.deflater.finish();
+        ByteBuf out = alloc.ioBuffer(Math.max(CHUNK_SIZE, in.readableBytes() / 2));
+        try {
+            while (!this.deflater.finished()) {
+                out.ensureWritable(CHUNK_SIZE);
+                ByteBuffer buffer = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + this.deflater.deflate(buffer));
+            }
+            return out;
+        } catch (Throwable t) {
+            out.release();
+            throw new EncoderException(t);
+        } finally {
+            this.deflater.reset();
+        }
+    }
+
+    private ByteBuf inflate(ByteBufAllocator alloc, ByteBuf in) {
+        this.inflater.setInput(in.nioBuffer());
+        ByteBuf out = alloc.ioBuffer(Math.max(CHUNK_SIZE, in.readableBytes() * 2));
+        try {
+            while (!this.inflater.finished()) {
+                if (out.writerIndex() >= MAX_DECOMPRESSED_SIZE) {
+                    throw new DecoderException("Decompressed batch exceeds " + MAX_DECOMPRESSED_SIZE + " bytes");
+                }
+                out.ensureWritable(CHUNK_SIZE);
+                ByteBuffer buffer = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                int inflated = this.inflater.inflate(buffer);
+                if (inflated == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                    throw new DecoderException("Truncated zlib batch");
+                }
+                out.writerIndex(out.writerIndex() + inflated);
+            }
+            return out;
+        } catch (DataFormatException e) {
+            out.release();
+            throw new DecoderException(e);
+        } catch (Throwable t) {
+            out.release();
+            throw t;
+        } finally {
+            this.inflater.reset();
+        }
+    }
+
+    private ByteBuf snappyEncode(ByteBufAllocator alloc, ByteBuf in) {
+        ByteBuf out = alloc.ioBuffer(in.readableBytes() + 32);
+        try {
+            this.snappy.encode(in, out, in.readableBytes());
+            return out;
+        } catch (Throwable t) {
+            out.release();
+            throw new EncoderException(t);
+        } finally {
+            this.snappy.reset();
+        }
+    }
+
+    private ByteBuf snappyDecode(ByteBufAllocator alloc, ByteBuf in) {
+        ByteBuf out = alloc.ioBuffer(Math.max(CHUNK_SIZE, in.readableBytes() * 2), MAX_DECOMPRESSED_SIZE);
+        try {
+            this.snappy.decode(in, out);
+            return out;
+        } catch (Throwable t) {
+            out.release();
+            throw new DecoderException(t);
+        } finally {
+            this.snappy.reset();
+        }
+    }
+}
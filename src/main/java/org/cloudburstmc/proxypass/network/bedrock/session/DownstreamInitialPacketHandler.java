@@ -7,6 +7,7 @@ import org.cloudburstmc.protocol.bedrock.util.EncryptionUtils;
 import org.cloudburstmc.protocol.bedrock.util.JsonUtils;
 import org.cloudburstmc.protocol.common.PacketSignal;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
 import org.jose4j.json.JsonUtil;
 import org.jose4j.json.internal.json_simple.JSONObject;
 import org.jose4j.jws.JsonWebSignature;
@@ -30,7 +31,9 @@ public class DownstreamInitialPacketHandler implements BedrockPacketHandler {
 
     @Override
     public PacketSignal handle(NetworkSettingsPacket packet) {
-        this.session.setCompression(packet.getCompressionAlgorithm());
+        CompressionHandler.install(this.session, Direction.CLIENTBOUND, packet.getCompressionAlgorithm(),
+                this.proxy.getConfiguration().getCompressionLevel(), packet.getCompressionThreshold(),
+                this.proxy.isForwardingCompressedBatches());
         log.info("Compression algorithm picked {}", packet.getCompressionAlgorithm());
 
         this.session.sendPacketImmediately(this.loginPacket);
@@ -4,7 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import lombok.extern.log4j.Log4j2;
@@ -17,14 +17,16 @@ import org.cloudburstmc.protocol.bedrock.data.BlockChangeEntry;
 import org.cloudburstmc.protocol.bedrock.data.SubChunkData;
 import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
 import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
-import org.cloudburstmc.protocol.bedrock.data.definitions.SimpleItemDefinition;
 import org.cloudburstmc.protocol.bedrock.data.entity.EntityDataMap;
 import org.cloudburstmc.protocol.bedrock.data.inventory.ContainerId;
 import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
 import org.cloudburstmc.protocol.bedrock.packet.*;
 import org.cloudburstmc.protocol.common.PacketSignal;
-import org.cloudburstmc.protocol.common.SimpleDefinitionRegistry;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkCache;
+import org.cloudburstmc.proxypass.network.bedrock.chunk.SubChunkTranslator;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemIdTranslationTable;
+import org.cloudburstmc.proxypass.network.bedrock.translation.LoginPacketCache;
 import org.cloudburstmc.proxypass.network.bedrock.util.NbtBlockDefinitionRegistry;
 import org.cloudburstmc.proxypass.network.bedrock.util.RecipeUtils;
 import org.cloudburstmc.protocol.bedrock.data.entity.EntityDataTypes;
@@ -36,10 +38,22 @@ import java.util.stream.Collectors;
 
 @Log4j2
 @RequiredArgsConstructor
-public class DownstreamPacketHandler implements BedrockPacketHandler {
+public class DownstreamPacketHandler implements BedrockPacketHandler, OrderedTranslationQueue.ReceiveListener {
     private final BedrockSession session;
     private final ProxyPlayerSession player;
     private final ProxyPass proxy;
+    private volatile int dimension;
+    /**
+     * Dimension each chunk waiting for translation was received in, a dimension change may be handled before them
+     */
+    private final Map<LevelChunkPacket, Integer> chunkDimensions = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    @Override
+    public void onReceived(BedrockPacket packet) {
+        if (packet instanceof LevelChunkPacket chunk) {
+            this.chunkDimensions.put(chunk, this.dimension);
+        }
+    }
 
     @Override
     public PacketSignal handle(AvailableEntityIdentifiersPacket packet) {
@@ -61,249 +75,56 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
         return PacketSignal.UNHANDLED;
     }
 
-    private static long decodeVarInt(ByteBuf buffer, int maxBits) {
-        long result = 0;
-        for (int shift = 0; shift < maxBits; shift += 7) {
-            final byte b = buffer.readByte();
-            result |= (b & 0x7FL) << shift;
-            if ((b & 0x80) == 0) {
-                return result;
-            }
-        }
-        throw new ArithmeticException("VarInt was too large");
-    }
-
-    // Modified version of VarInts.readInt that works on a ByteBuf
-    public static int readVarInt(ByteBuf buffer) {
-        int n = (int) decodeVarInt(buffer, 32);
-        return (n >>> 1) ^ -(n & 1);
-    }
-
-    private static byte[] encodeFull(long value) {
-        byte[] bytes;
-        if ((value & ~0x1FFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) (value >>> 14)
-            };
-        } else if ((value & ~0xFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) (value >>> 21)
-            };
-        } else if ((value & ~0x7FFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) (value >>> 28)
-            };
-        } else if ((value & ~0x3FFFFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 28) & 0x7FL | 0x80L),
-                    (byte) (value >>> 35)
-            };
-        } else if ((value & ~0x1FFFFFFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 28) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 35) & 0x7FL | 0x80L),
-                    (byte) (value >>> 42)
-            };
-        } else if ((value & ~0xFFFFFFFFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 28) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 35) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 42) & 0x7FL | 0x80L),
-                    (byte) (value >>> 49)
-            };
-        } else if ((value & ~0x7FFFFFFFFFFFFFFFL) == 0) {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 28) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 35) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 42) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 49) & 0x7FL | 0x80L),
-                    (byte) (value >>> 56)
-            };
-        } else {
-            bytes = new byte[] {
-                    (byte) (value & 0x7FL | 0x80L),
-                    (byte) ((value >>> 7) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 14) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 21) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 28) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 35) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 42) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 49) & 0x7FL | 0x80L),
-                    (byte) ((value >>> 56) & 0x7FL | 0x80L),
-                    (byte) (value >>> 63)
-            };
-        }
-        return bytes;
-    }
-
-    public static void writeVarInt(ByteBuf buffer, int value) {
-        long longValue = ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
-
-        // Peel the one and two byte count cases explicitly as they are the most common VarInt sizes
-        // that the server will write, to improve inlining.
-        if ((longValue & ~0x7FL) == 0) {
-            buffer.ensureWritable(1);
-            buffer.writeByte((byte) longValue);
-        } else if ((longValue & ~0x3FFFL) == 0) {
-            byte[] bytes = {
-                    (byte) (longValue & 0x7FL | 0x80L),
-                    (byte) (longValue >>> 7)
-            };
-            buffer.ensureWritable(2);
-            buffer.writeBytes(bytes);
-        } else {
-            byte[] bytesToWrite = encodeFull(longValue);
-            buffer.ensureWritable(bytesToWrite.length);
-            buffer.writeBytes(bytesToWrite);
-        }
-    }
-
     @Override
     public PacketSignal handle(SubChunkPacket packet) {
-        // TODO:
-        // - Move this into another file
-        // - Add V3 support
-
-        List<SubChunkData> subChunks = packet.getSubChunks();
+        // TODO: Add V3 support
+        for (SubChunkData subChunk : packet.getSubChunks()) {
+            ByteBuf subChunkData = subChunk.getData();
 
-        for (int subChunkIndex=0; subChunkIndex < subChunks.size(); subChunkIndex++) {
-            ByteBuf subChunkData = subChunks.get(subChunkIndex).getData();
-
-            if (subChunkData.readableBytes() == 0) {
+            if (subChunkData == null || subChunkData.readableBytes() == 0) {
                 continue; // Skip this subchunk if it has no data
             }
 
-            ByteBuf newSubChunkData = Unpooled.directBuffer(subChunkData.capacity()); // do not judge
-
-            /*String finalString = "";
-            for (int i = 0; i < subChunkData.capacity(); i ++) {
-                byte b = subChunkData.getByte(i);
-                finalString += String.format("%02x", b) + ' ';
+            ByteBuf translated;
+            SubChunkCache cache = this.proxy.getSubChunkCache();
+            if (cache != null) {
+                translated = cache.getOrTranslate(subChunkData, this.player.getUpstream().getCodec().getProtocolVersion(), this::translateSubChunk);
+            } else {
+                translated = this.translateSubChunk(subChunkData);
             }
+            subChunk.setData(translated);
+            subChunkData.release(); // The translated buffer holds its own references to the parts it reuses
+        }
 
-            System.out.println(finalString);*/
-
-            subChunkData.readerIndex(0);
-            newSubChunkData.readerIndex(0);
-
-            // Read subchunk version
-            int subChunkVersion = subChunkData.readUnsignedByte();
-            newSubChunkData.ensureWritable(1);
-            newSubChunkData.writeByte(subChunkVersion);
-
-            if (subChunkVersion == 9 || subChunkVersion == 8) {
-                // First byte is "storages count"
-                int storagesCount = subChunkData.readUnsignedByte();
-                newSubChunkData.ensureWritable(1);
-                newSubChunkData.writeByte(storagesCount);
-
-                // Potential junk second byte if v9
-                if (subChunkVersion == 9) {
-                    newSubChunkData.ensureWritable(1);
-                    newSubChunkData.writeByte(subChunkData.readUnsignedByte()); // Skip the "layer height" field?
-                }
-
-                for (int y=0; y < storagesCount; y++) {
-                    // Read palette
-                    int paletteHeader = subChunkData.readUnsignedByte();
-
-                    newSubChunkData.ensureWritable(1);
-                    newSubChunkData.writeByte(paletteHeader);
-
-                    int bitsPerBlock = paletteHeader >> 1;
-                    boolean isPersistant = (paletteHeader & 0x01) == 0; // This should always be false or bad stuff will happen
-                    assert !isPersistant;
-
-                    if (bitsPerBlock != 0) {
-                        int blocksPerWord = Integer.SIZE / bitsPerBlock;
-                        int wordsCount = (4096 + blocksPerWord - 1) / blocksPerWord;
-                        int[] words = new int[wordsCount];
-
-                        // Read words
-                        for (int i=0; i < wordsCount; i++) {
-                            int word = subChunkData.readIntLE();
-
-                            newSubChunkData.ensureWritable(4);
-                            newSubChunkData.writeIntLE(word);
-
-                            words[i] = word;
-                        }
-                        int paletteSize = readVarInt(subChunkData); // What?
-                        writeVarInt(newSubChunkData, paletteSize);
-
-                        // Now read the palette
-                        List<Integer> blockPalette = new ArrayList<>();
-                        for (int i=0; i < paletteSize; i++) {
-                            int blockRID = readVarInt(subChunkData);
-                            blockPalette.add(blockRID);
-
-                            int fixedBlockRID = this.proxy.getRIDReplacementsServerToClient().getOrDefault(blockRID, 0);
-
-                            // Get proper blockPalette
-                            writeVarInt(newSubChunkData, fixedBlockRID);
-                        }
-                    }
-                }
-
-                // Dump the rest of the packet (block entities)
-                // TODO: This code legit sucks
-                while (subChunkData.readableBytes() > 0) {
-                    newSubChunkData.ensureWritable(1);
-                    newSubChunkData.writeByte(subChunkData.readByte());
-                }
-            } else if (subChunkVersion == 1) {
-                System.out.println("ERRRRRR SUBCHNK V1 DETECTED OH NOOOOOOOOOOOOOOOOO");
-            } else if (subChunkVersion >= 0 && subChunkVersion <= 7) {
-                for (int i=0; i < 4096; i++) { // Read subchunk data
-                    short blockRID = subChunkData.readUnsignedByte();
+        this.player.getUpstream().getClientBlobCache().cacheSubChunks(packet);
+        return PacketSignal.UNHANDLED;
+    }
 
-                    int fixedBlockRID = this.proxy.getRIDReplacementsServerToClient().getOrDefault(blockRID, 0);
+    private ByteBuf translateSubChunk(ByteBuf subChunkData) {
+        return SubChunkTranslator.translate(ByteBufAllocator.DEFAULT, subChunkData, this.player.getUpstream().getBlockTranslationTable());
+    }
 
-                    // Get proper blockPalette
-                    newSubChunkData.ensureWritable(1);
-                    newSubChunkData.writeByte(fixedBlockRID);
-                }
+    @Override
+    public PacketSignal handle(LevelChunkPacket packet) {
+        Integer receivedDimension = this.chunkDimensions.remove(packet);
+        int dimension = receivedDimension == null ? this.dimension : receivedDimension;
 
-                // Dump the rest of the packet (block entities)
-                // TODO: This code legit sucks
-                while (subChunkData.readableBytes() > 0) {
-                    newSubChunkData.ensureWritable(1);
-                    newSubChunkData.writeByte(subChunkData.readByte());
-                }
-            } else {
-                System.out.println("Unhandled subchunk version: " + Integer.toString(subChunkVersion));
-            }
+        // Sections are sent separately when the subchunk request system or the blob cache is in use
+        if (packet.isRequestSubChunks() || packet.isCachingEnabled() || packet.getSubChunksLength() <= 0) {
+            return PacketSignal.UNHANDLED;
+        }
 
-            subChunks.get(subChunkIndex).setData(newSubChunkData); // Is this needed?
+        ByteBuf chunkData = packet.getData();
+        if (chunkData == null || chunkData.readableBytes() == 0) {
+            return PacketSignal.UNHANDLED;
         }
 
-        packet.setSubChunks(subChunks); // Is this needed?
+        ByteBuf translated = SubChunkTranslator.translateColumn(ByteBufAllocator.DEFAULT, chunkData,
+                packet.getSubChunksLength(), this.player.getUpstream().getBlockTranslationTable());
+        packet.setData(translated);
+        chunkData.release();
 
+        this.player.getUpstream().getClientBlobCache().cacheColumn(packet, dimension);
         return PacketSignal.UNHANDLED;
     }
 
@@ -311,7 +132,7 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
     public PacketSignal handle(UpdateBlockPacket packet) {
         BlockDefinition definition = packet.getDefinition();
 
-        BlockDefinition newBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(definition.getRuntimeId(), 0));
+        BlockDefinition newBlockDefinition = this.player.getUpstream().getClientBlockDefinitions().getDefinition(this.player.getUpstream().getBlockTranslationTable().toClient(definition.getRuntimeId()));
         packet.setDefinition(newBlockDefinition);
 
         return PacketSignal.UNHANDLED;
@@ -321,7 +142,7 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
     public PacketSignal handle(UpdateBlockSyncedPacket packet) {
         BlockDefinition definition = packet.getDefinition();
 
-        BlockDefinition newBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(definition.getRuntimeId(), 0));
+        BlockDefinition newBlockDefinition = this.player.getUpstream().getClientBlockDefinitions().getDefinition(this.player.getUpstream().getBlockTranslationTable().toClient(definition.getRuntimeId()));
         packet.setDefinition(newBlockDefinition);
 
         return PacketSignal.UNHANDLED;
@@ -334,7 +155,7 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
         if (entityMetadata.containsKey(EntityDataTypes.BLOCK) && entityMetadata.get(EntityDataTypes.BLOCK) != null) {
             BlockDefinition oldBlockDefinition = (BlockDefinition) entityMetadata.get(EntityDataTypes.BLOCK);
 
-            BlockDefinition newBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(oldBlockDefinition.getRuntimeId(), 0));
+            BlockDefinition newBlockDefinition = this.player.getUpstream().getClientBlockDefinitions().getDefinition(this.player.getUpstream().getBlockTranslationTable().toClient(oldBlockDefinition.getRuntimeId()));
             entityMetadata.put(EntityDataTypes.BLOCK, newBlockDefinition);
         }
 
@@ -352,7 +173,7 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
             BlockChangeEntry blockChangeEntry = standardBlocks.get(i);
 
             // Create new block definition
-            BlockDefinition newBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(blockChangeEntry.getDefinition().getRuntimeId(), 0));
+            BlockDefinition newBlockDefinition = this.player.getUpstream().getClientBlockDefinitions().getDefinition(this.player.getUpstream().getBlockTranslationTable().toClient(blockChangeEntry.getDefinition().getRuntimeId()));
 
             // Create new change entry
             BlockChangeEntry newBlockChangeEntry = new BlockChangeEntry(blockChangeEntry.getPosition(), newBlockDefinition, blockChangeEntry.getUpdateFlags(), blockChangeEntry.getMessageEntityId(), blockChangeEntry.getMessageType());
@@ -364,7 +185,7 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
             BlockChangeEntry blockChangeEntry = extraBlocks.get(i);
 
             // Create new block definition
-            BlockDefinition newBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(blockChangeEntry.getDefinition().getRuntimeId(), 0));
+            BlockDefinition newBlockDefinition = this.player.getUpstream().getClientBlockDefinitions().getDefinition(this.player.getUpstream().getBlockTranslationTable().toClient(blockChangeEntry.getDefinition().getRuntimeId()));
 
             // Create new change entry
             BlockChangeEntry newBlockChangeEntry = new BlockChangeEntry(blockChangeEntry.getPosition(), newBlockDefinition, blockChangeEntry.getUpdateFlags(), blockChangeEntry.getMessageEntityId(), blockChangeEntry.getMessageType());
@@ -398,21 +219,24 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
             }
 
             itemData.add(new DataEntry(entry.getIdentifier(), entry.getRuntimeId()));
-            ProxyPass.legacyIdMap.put(entry.getRuntimeId(), entry.getIdentifier());
         }
 
-        SimpleDefinitionRegistry<ItemDefinition> itemDefinitions = SimpleDefinitionRegistry.<ItemDefinition>builder()
-                .addAll(packet.getItemDefinitions())
-                .add(new SimpleItemDefinition("minecraft:empty", 0, false))
-                .build();
+        // Clients of a version with its own item palette get their own item IDs, the handlers translate between them
+        ItemIdTranslationTable itemTable = this.proxy.updateServerItems(packet.getItemDefinitions())
+                .getTable(player.getUpstream().getCodec().getProtocolVersion());
+        player.getUpstream().setItemTranslationTable(itemTable);
+        this.session.getPeer().getCodecHelper().setItemDefinitions(itemTable.getServerPalette().getRegistry());
+        player.getUpstream().getPeer().getCodecHelper().setItemDefinitions(itemTable.getClientPalette().getRegistry());
+        if (!itemTable.isIdentity()) {
+            packet.setItemDefinitions(new ArrayList<>(itemTable.getClientPalette().getDefinitions()));
+        }
 
-        this.session.getPeer().getCodecHelper().setItemDefinitions(itemDefinitions);
-        player.getUpstream().getPeer().getCodecHelper().setItemDefinitions(itemDefinitions);
+        // The flag is forwarded to the client unchanged, so both sides use hashed IDs or neither does
+        player.getUpstream().setBlockNetworkIdsHashed(packet.isBlockNetworkIdsHashed());
 
-        // This work maybe?
-        // (probably not)
-        this.session.getPeer().getCodecHelper().setBlockDefinitions(this.proxy.getClientBlockDefinitions());
-        player.getUpstream().getPeer().getCodecHelper().setBlockDefinitions(this.proxy.getServerBlockDefinitions());
+        // Each side decodes and encodes the runtime IDs of its own palette, the handlers translate between them
+        this.session.getPeer().getCodecHelper().setBlockDefinitions(this.player.getUpstream().getServerBlockDefinitions());
+        player.getUpstream().getPeer().getCodecHelper().setBlockDefinitions(this.player.getUpstream().getClientBlockDefinitions());
 
         itemData.sort(Comparator.comparing(o -> o.name));
 
@@ -420,6 +244,8 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
         proxy.saveJson("legacy_item_ids.json", sortMap(legacyItems));
         proxy.saveJson("runtime_item_states.json", itemData);
 
+        this.dimension = packet.getDimensionId();
+
         packet.setBlockRegistryChecksum(-7810975316988886033L);
         packet.setClientSideGenerationEnabled(false); // Broken in ProxyPass
         packet.setServerEngine("1.20.31");
@@ -427,9 +253,33 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
         return PacketSignal.UNHANDLED;
     }
 
+    @Override
+    public PacketSignal handle(ChunkRadiusUpdatedPacket packet) {
+        this.proxy.getViewDistanceGovernor().onUpdated(this.player.getUpstream(), packet);
+        return PacketSignal.UNHANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(ChangeDimensionPacket packet) {
+        this.dimension = packet.getDimension();
+        return PacketSignal.UNHANDLED;
+    }
+
     @Override
     public PacketSignal handle(CraftingDataPacket packet) {
-        RecipeUtils.writeRecipes(packet, this.proxy);
+        // Every player gets the same recipes, they only need to be written again when the server changes them
+        LoginPacketCache.Recipes recipes = this.proxy.getLoginPacketCache().getRecipes(packet);
+        if (recipes.markDumped()) {
+            RecipeUtils.writeRecipes(packet, this.proxy);
+        }
+
+        LoginPacketCache.RecipeLists translated = this.player.getUpstream().translateRecipesToClient(recipes);
+        packet.getCraftingData().clear();
+        packet.getCraftingData().addAll(translated.craftingData());
+        packet.getPotionMixData().clear();
+        packet.getPotionMixData().addAll(translated.potionMixData());
+        packet.getContainerMixData().clear();
+        packet.getContainerMixData().addAll(translated.containerMixData());
         return PacketSignal.UNHANDLED;
     }
 
@@ -470,32 +320,70 @@ public class DownstreamPacketHandler implements BedrockPacketHandler {
 
     @Override
     public PacketSignal handle(CreativeContentPacket packet) {
-        try {
-            dumpCreativeItems(packet.getContents());
-        } catch (Exception e) {
-            log.error("Failed to dump creative contents", e);
+        LoginPacketCache.CreativeItems creativeItems = this.proxy.getLoginPacketCache().getCreativeItems(packet.getContents());
+        if (creativeItems.markDumped()) {
+            try {
+                dumpCreativeItems(packet.getContents());
+            } catch (Exception e) {
+                log.error("Failed to dump creative contents", e);
+            }
         }
+
+        packet.setContents(this.player.getUpstream().translateCreativeItemsToClient(creativeItems));
         return PacketSignal.UNHANDLED;
     }
 
-    // Handles creative items for versions prior to 1.16
     @Override
     public PacketSignal handle(InventoryContentPacket packet) {
+        // Handles creative items for versions prior to 1.16
         if (packet.getContainerId() == ContainerId.CREATIVE) {
-            dumpCreativeItems(packet.getContents().toArray(new ItemData[0]));
-            return PacketSignal.UNHANDLED;
+            ItemData[] creativeItems = packet.getContents().toArray(new ItemData[0]);
+            if (this.proxy.getLoginPacketCache().getCreativeItems(creativeItems).markDumped()) {
+                dumpCreativeItems(creativeItems);
+            }
         }
 
-        // TODO
-        /*
-        List<ItemData> inventoryContents = packet.getContents();
+        this.player.getUpstream().translateContainerToClient(packet.getContainerId(), packet.getContents());
+        return PacketSignal.UNHANDLED;
+    }
 
-        for (int i=0; i < inventoryContents.size(); i++) {
-            ItemData item = inventoryContents.get(i);
+    @Override
+    public PacketSignal handle(InventorySlotPacket packet) {
+        packet.setItem(this.player.getUpstream().translateSlotToClient(packet.getContainerId(), packet.getSlot(), packet.getItem()));
+        return PacketSignal.UNHANDLED;
+    }
 
-            BlockDefinition fixedBlockDefinition = this.proxy.getClientBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsServerToClient().getOrDefault(item.getBlockDefinition().getRuntimeId(), 0));
-        }*/
+    @Override
+    public PacketSignal handle(ContainerClosePacket packet) {
+        this.player.getUpstream().getInventoryShadow().remove(packet.getId());
+        return PacketSignal.UNHANDLED;
+    }
 
+    @Override
+    public PacketSignal handle(MobEquipmentPacket packet) {
+        packet.setItem(this.player.getUpstream().translateItemToClient(packet.getItem()));
+        return PacketSignal.UNHANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(MobArmorEquipmentPacket packet) {
+        ProxyServerSession upstream = this.player.getUpstream();
+        packet.setHelmet(upstream.translateItemToClient(packet.getHelmet()));
+        packet.setChestplate(upstream.translateItemToClient(packet.getChestplate()));
+        packet.setLeggings(upstream.translateItemToClient(packet.getLeggings()));
+        packet.setBoots(upstream.translateItemToClient(packet.getBoots()));
+        return PacketSignal.UNHANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(AddItemEntityPacket packet) {
+        packet.setItemInHand(this.player.getUpstream().translateItemToClient(packet.getItemInHand()));
+        return PacketSignal.UNHANDLED;
+    }
+
+    @Override
+    public PacketSignal handle(AddPlayerPacket packet) {
+        packet.setHand(this.player.getUpstream().translateItemToClient(packet.getHand()));
         return PacketSignal.UNHANDLED;
     }
 
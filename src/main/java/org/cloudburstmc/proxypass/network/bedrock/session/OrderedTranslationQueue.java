@@ -0,0 +1,135 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.CraftingDataPacket;
+import org.cloudburstmc.protocol.bedrock.packet.LevelChunkPacket;
+import org.cloudburstmc.protocol.bedrock.packet.SubChunkPacket;
+import org.cloudburstmc.protocol.common.PacketSignal;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Moves translation of heavy packets off the event loop while keeping the per-session packet order.
+ * <p>
+ * Heavy packets are handled on the translation executor. Every other packet is still handled inline, and is sent
+ * straight away unless heavy packets received before it are still being translated, in which case it waits in the
+ * queue behind them. Packets always leave the queue in the order they were received.
+ */
+@Log4j2
+public class OrderedTranslationQueue {
+
+    private static final Set<Class<? extends BedrockPacket>> HEAVY_PACKETS = Set.of(
+            SubChunkPacket.class,
+            LevelChunkPacket.class,
+            CraftingDataPacket.class
+    );
+
+    private final Executor executor;
+    private final PacketTranslatorRegistry translators;
+    private final OutboundBatcher outboundBatcher;
+    private final Deque<Entry> pending = new ArrayDeque<>();
+
+    public OrderedTranslationQueue(Executor executor, PacketTranslatorRegistry translators, OutboundBatcher outboundBatcher) {
+        this.executor = executor;
+        this.translators = translators;
+        this.outboundBatcher = outboundBatcher;
+    }
+
+    public static boolean isHeavy(BedrockPacket packet) {
+        return HEAVY_PACKETS.contains(packet.getClass());
+    }
+
+    /**
+     * Handles a packet and forwards it to the send session if it was left unhandled.
+     */
+    public void handle(BedrockPacket packet, BedrockPacketHandler handler, BedrockSession sendSession) {
+        if (!isHeavy(packet)) {
+            PacketSignal signal = this.translators.handle(Direction.CLIENTBOUND, handler, packet);
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    this.forward(packet, signal, sendSession, false);
+                } else {
+                    Entry entry = new Entry(ReferenceCountUtil.retain(packet), sendSession);
+                    entry.signal = signal;
+                    this.pending.addLast(entry);
+                }
+            }
+            return;
+        }
+
+        if (handler instanceof ReceiveListener listener) {
+            listener.onReceived(packet);
+        }
+        Entry entry = new Entry(ReferenceCountUtil.retain(packet), sendSession);
+        synchronized (this) {
+            this.pending.addLast(entry);
+        }
+        this.executor.execute(() -> {
+            try {
+                entry.signal = this.translators.handle(Direction.CLIENTBOUND, handler, entry.packet);
+            } catch (Throwable t) {
+                log.error("Failed to translate {}", entry.packet.getClass().getSimpleName(), t);
+                entry.signal = PacketSignal.HANDLED;
+            }
+            this.drain();
+        });
+    }
+
+    /**
+     * @return number of packets waiting for translation or for earlier packets to finish translating
+     */
+    public synchronized int getDepth() {
+        return this.pending.size();
+    }
+
+    private synchronized void drain() {
+        Entry entry;
+        boolean forwarded = false;
+        while ((entry = this.pending.peekFirst()) != null && entry.signal != null) {
+            this.pending.pollFirst();
+            forwarded = true;
+            this.forward(entry.packet, entry.signal, entry.sendSession, true);
+        }
+        if (forwarded) {
+            // Packets released by a translation form their own batch, the inbound batch was already handled
+            this.outboundBatcher.endOfBatch();
+        }
+    }
+
+    private void forward(BedrockPacket packet, PacketSignal signal, BedrockSession sendSession, boolean owned) {
+        if (signal == PacketSignal.UNHANDLED && sendSession != null) {
+            this.outboundBatcher.send(sendSession, owned ? packet : ReferenceCountUtil.retain(packet));
+        } else if (owned) {
+            ReferenceCountUtil.release(packet);
+        }
+    }
+
+    /**
+     * Handler whose translation of heavy packets depends on state set by the packets received before them.
+     */
+    public interface ReceiveListener {
+        /**
+         * Called in packet order on the receiving event loop, before the heavy packet is handed to the executor.
+         */
+        void onReceived(BedrockPacket packet);
+    }
+
+    private static class Entry {
+        private final BedrockPacket packet;
+        private final BedrockSession sendSession;
+        private volatile PacketSignal signal;
+
+        private Entry(BedrockPacket packet, BedrockSession sendSession) {
+            this.packet = packet;
+            this.sendSession = sendSession;
+        }
+    }
+}
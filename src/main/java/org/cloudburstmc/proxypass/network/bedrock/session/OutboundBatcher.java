@@ -0,0 +1,131 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.netty.codec.batch.BedrockBatchDecoder;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the batches a session forwards aligned with the batches it receives.
+ * <p>
+ * Forwarded packets are queued on the other session, which on its own only sends its queue every network tick. Once
+ * every packet of an inbound batch has been handled, the queue is flushed as one outbound batch, so the packets of
+ * one batch are compressed and framed together and leave without waiting for the tick. Within the max delay, the
+ * packets of several small inbound batches are coalesced into one outbound batch. The queue is flushed early when it
+ * reaches the max number of packets.
+ * <p>
+ * Packets may be forwarded from the event loop of the receiving session and from the translation executor.
+ */
+public class OutboundBatcher {
+
+    private static final String HANDLER_NAME = "proxypass-outbound-batcher";
+
+    private final long maxDelayNanos;
+    private final int maxPackets;
+    /**
+     * Null if packets are always sent in the order they are forwarded
+     */
+    private final OutboundScheduler scheduler;
+    private BedrockSession target;
+    private int pending;
+    private long firstPendingTime;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param maxDelayMillis longest time a forwarded packet waits for packets of later inbound batches, or a negative
+     *                       value to leave flushing to the network tick
+     * @param maxPackets     number of queued packets which are flushed straight away, 0 for no limit
+     * @param scheduler      scheduler holding packets while the target cannot keep up, or null
+     */
+    public OutboundBatcher(int maxDelayMillis, int maxPackets, OutboundScheduler scheduler) {
+        this.maxDelayNanos = maxDelayMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxPackets = maxPackets;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Calls {@link #endOfBatch()} of the batcher every time all packets of an inbound batch of the session were handled.
+     */
+    public static void install(BedrockSession session, OutboundBatcher batcher) {
+        if (!batcher.isEnabled() || session.getPeer().getChannel().pipeline().get(HANDLER_NAME) != null) {
+            return;
+        }
+        session.getPeer().getChannel().pipeline().addBefore(BedrockBatchDecoder.NAME, HANDLER_NAME, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                try {
+                    ctx.fireChannelRead(msg); // Decodes and handles every packet of the batch
+                } finally {
+                    batcher.endOfBatch();
+                }
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return this.maxDelayNanos >= 0;
+    }
+
+    /**
+     * Queues a packet on the target session.
+     */
+    public void send(BedrockSession target, BedrockPacket packet) {
+        if (this.scheduler != null && this.scheduler.offer(target, packet)) {
+            return; // Sent by the scheduler once the target keeps up again
+        }
+        target.sendPacket(packet);
+        if (!this.isEnabled()) {
+            return;
+        }
+
+        synchronized (this) {
+            if (this.target != target) {
+                this.flush();
+                this.target = target;
+            }
+            if (this.pending++ == 0) {
+                this.firstPendingTime = System.nanoTime();
+            }
+            if (this.maxPackets > 0 && this.pending >= this.maxPackets) {
+                this.flush();
+            }
+        }
+    }
+
+    /**
+     * Flushes the queued packets, unless they can still wait for the packets of the next inbound batch.
+     */
+    public synchronized void endOfBatch() {
+        if (this.pending == 0 || this.scheduledFlush != null) {
+            return;
+        }
+
+        long remaining = this.maxDelayNanos - (System.nanoTime() - this.firstPendingTime);
+        if (remaining <= 0) {
+            this.flush();
+        } else {
+            this.scheduledFlush = this.target.getPeer().getChannel().eventLoop().schedule(() -> {
+                synchronized (this) {
+                    this.scheduledFlush = null;
+                    this.flush();
+                }
+            }, remaining, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush() {
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        if (this.pending == 0) {
+            return;
+        }
+        this.pending = 0;
+        this.target.getPeer().flush();
+    }
+}
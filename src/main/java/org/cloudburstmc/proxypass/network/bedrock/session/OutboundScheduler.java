@@ -0,0 +1,444 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.packet.*;
+import org.cloudburstmc.protocol.common.util.VarInts;
+import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.util.SheddingPolicy;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the packets forwarded to a client by priority while the client cannot keep up.
+ * <p>
+ * As long as the channel to the client is writable, packets go out in the order they were received. Once it is not,
+ * packets are held in one queue per {@link Priority} and released highest priority first when the channel is writable
+ * again, so movement corrections, latency probes and chat are not stuck behind a flood of chunks. Released packets are
+ * flushed per priority and every few dozen packets, and the rest stay held as soon as the client falls behind again.
+ * Packets keep their order within a priority, and packets which change the state of the whole world, like a dimension
+ * change, release every held packet before them. A client with more held packets than the disconnect limit is
+ * disconnected.
+ * <p>
+ * Packets adding or removing an entity are control packets, so movements, inventory and other control packets
+ * referring to an entity are never released before the entity exists. Entity packets held for an entity which is
+ * removed in the meantime arrive after its removal and are ignored by the client.
+ * <p>
+ * While packets are held, the {@link SheddingPolicy} decides whether a newer movement of an entity replaces its
+ * queued movement, taking its place at the end of the queue, and whether cosmetic packets are dropped. World data is
+ * never dropped, the client would be left with holes in its world.
+ * <p>
+ * Chunks are additionally paced by a token bucket counting chunk sections, so a teleport does not send thousands of
+ * them in one burst. Chunks without tokens wait in a pacing queue of their own, together with the world data received
+ * after them, which packets of the other priorities pass. Paced packets do not count as held, waiting for tokens does
+ * not mean the client cannot keep up.
+ */
+@Log4j2
+public class OutboundScheduler {
+
+    private static final long DRAIN_INTERVAL_MILLIS = 10;
+    /**
+     * Released packets sent per flush, so the channel can report in between that the client fell behind again
+     */
+    private static final int RELEASE_FLUSH_PACKETS = 64;
+    private static final Map<Class<? extends BedrockPacket>, Priority> PRIORITIES = new HashMap<>();
+    private static final Set<Class<? extends BedrockPacket>> BARRIERS = Set.of(
+            StartGamePacket.class,
+            ChangeDimensionPacket.class,
+            PlayStatusPacket.class,
+            RespawnPacket.class,
+            DisconnectPacket.class,
+            TransferPacket.class
+    );
+    /**
+     * Packets starting with the runtime ID of the entity they move, of which only the latest one matters
+     */
+    private static final Set<Class<? extends BedrockPacket>> COALESCED = Set.of(
+            MoveEntityAbsolutePacket.class,
+            SetEntityMotionPacket.class
+    );
+
+    static {
+        for (Class<? extends BedrockPacket> packet : Set.of(MoveEntityAbsolutePacket.class, MoveEntityDeltaPacket.class,
+                SetEntityMotionPacket.class, SetEntityDataPacket.class, MobEquipmentPacket.class,
+                MobArmorEquipmentPacket.class, MobEffectPacket.class, UpdateAttributesPacket.class, EntityEventPacket.class,
+                SetEntityLinkPacket.class)) {
+            PRIORITIES.put(packet, Priority.ENTITY);
+        }
+        for (Class<? extends BedrockPacket> packet : Set.of(LevelChunkPacket.class, SubChunkPacket.class,
+                UpdateBlockPacket.class, UpdateBlockSyncedPacket.class, UpdateSubChunkBlocksPacket.class,
+                BlockEntityDataPacket.class, BlockEventPacket.class, NetworkChunkPublisherUpdatePacket.class)) {
+            PRIORITIES.put(packet, Priority.WORLD);
+        }
+        for (Class<? extends BedrockPacket> packet : Set.of(LevelSoundEventPacket.class, LevelSoundEvent1Packet.class,
+                LevelSoundEvent2Packet.class, LevelEventPacket.class, SpawnParticleEffectPacket.class,
+                PlaySoundPacket.class, AnimatePacket.class, AnimateEntityPacket.class)) {
+            PRIORITIES.put(packet, Priority.COSMETIC);
+        }
+    }
+
+    private final ProxyPass proxy;
+    private final SheddingPolicy policy;
+    private final int queueLimit;
+    private final int disconnectLimit;
+    private final Deque<Held>[] queues;
+    /**
+     * Chunks waiting for tokens and the world data received after them
+     */
+    private final Deque<BedrockPacket> paced = new ArrayDeque<>();
+    /**
+     * Latest held movement per entity, for each coalesced packet type
+     */
+    private final Map<Class<? extends BedrockPacket>, Long2ObjectMap<Held>> movements = new HashMap<>();
+    private BedrockSession target;
+    private int held;
+    private boolean drainScheduled;
+    private long dropped;
+    private final double chunkRate;
+    private final double chunkBurst;
+    private double chunkTokens;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param queueLimit      held packets per priority above which the policy sheds cosmetic packets, 0 for no limit
+     * @param disconnectLimit held packets above which the client is disconnected, 0 for no limit
+     * @param chunkRate       chunk sections sent per second, 0 to send chunks as fast as the client takes them
+     * @param chunkBurst      chunk sections which may be sent at once after a pause
+     */
+    @SuppressWarnings("unchecked")
+    public OutboundScheduler(ProxyPass proxy, SheddingPolicy policy, int queueLimit, int disconnectLimit, int chunkRate,
+                             int chunkBurst) {
+        this.proxy = proxy;
+        this.policy = policy;
+        this.queueLimit = queueLimit;
+        this.disconnectLimit = disconnectLimit;
+        this.chunkRate = chunkRate;
+        this.chunkBurst = Math.max(chunkBurst, chunkRate);
+        this.chunkTokens = this.chunkBurst;
+        this.queues = new Deque[Priority.values().length];
+        for (int i = 0; i < this.queues.length; i++) {
+            this.queues[i] = new ArrayDeque<>();
+        }
+        for (Class<? extends BedrockPacket> packet : COALESCED) {
+            this.movements.put(packet, new Long2ObjectOpenHashMap<>());
+        }
+    }
+
+    /**
+     * Holds a packet if it cannot be sent right away.
+     *
+     * @return false if the packet should be sent now, true if the scheduler took it
+     */
+    public synchronized boolean offer(BedrockSession target, BedrockPacket packet) {
+        this.target = target;
+        if (!target.getPeer().getChannel().isActive()) {
+            ReferenceCountUtil.release(packet);
+            return true; // Nothing to send to anymore
+        }
+        Class<? extends BedrockPacket> type = typeOf(packet);
+        if (type != null && BARRIERS.contains(type)) {
+            this.release(true);
+            this.releasePaced(true);
+            return false;
+        }
+
+        Priority priority = type == null ? Priority.CONTROL : PRIORITIES.getOrDefault(type, Priority.CONTROL);
+        boolean writable = this.isWritable();
+        boolean congested = this.held > 0 || !writable;
+        if (priority == Priority.WORLD && (!this.paced.isEmpty() || !congested && !this.takeChunkTokens(packet))) {
+            this.paced.addLast(packet);
+            this.scheduleDrain();
+            return true;
+        }
+        if (!congested) {
+            return false;
+        }
+
+        // Packets are only shed while the client cannot keep up, not while the held ones are still being released
+        boolean shedding = this.policy != SheddingPolicy.NONE && !writable;
+        if (shedding && priority == Priority.COSMETIC && this.policy == SheddingPolicy.DROP) {
+            this.drop(packet);
+            return true;
+        }
+        if (shedding) {
+            this.coalesce(type, packet);
+        }
+
+        Deque<Held> queue = this.queues[priority.ordinal()];
+        if (shedding && priority == Priority.COSMETIC && this.queueLimit > 0 && queue.size() >= this.queueLimit) {
+            this.drop(queue.pollFirst().packet);
+            this.held--;
+        }
+        Held entry = new Held(packet);
+        queue.addLast(entry);
+        this.held++;
+        if (type != null && this.movements.containsKey(type)) {
+            long entityId = entityIdOf(packet);
+            if (entityId >= 0) {
+                this.movements.get(type).put(entityId, entry);
+            }
+        }
+        if (this.disconnectLimit > 0 && this.held > this.disconnectLimit) {
+            log.info("Disconnecting {} which fell {} packets behind", target.getSocketAddress(), this.held);
+            this.clear();
+            target.disconnect("Connection too slow");
+            return true;
+        }
+        this.scheduleDrain();
+        return true;
+    }
+
+    /**
+     * @return number of packets waiting for the client to keep up, not counting paced chunks
+     */
+    public synchronized int getHeld() {
+        return this.held;
+    }
+
+    /**
+     * @return whether no packet is held or paced, so packets sent past the scheduler cannot overtake any
+     */
+    public synchronized boolean isEmpty() {
+        return this.held == 0 && this.paced.isEmpty();
+    }
+
+    /**
+     * @return number of packets dropped by the shedding policy
+     */
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Drops every held packet, once the client is gone.
+     */
+    private void clear() {
+        for (Deque<Held> queue : this.queues) {
+            Held entry;
+            while ((entry = queue.pollFirst()) != null) {
+                if (entry.packet != null) {
+                    ReferenceCountUtil.release(entry.packet);
+                }
+            }
+        }
+        this.movements.values().forEach(Map::clear);
+        this.held = 0;
+        this.paced.forEach(ReferenceCountUtil::release);
+        this.paced.clear();
+    }
+
+    private boolean isWritable() {
+        return this.target.getPeer().getChannel().isWritable();
+    }
+
+    /**
+     * Drops the held movement of the same entity, this one is queued behind every packet held after it. Keeping the
+     * place of the held one would move this packet ahead of relative movements of the entity queued in between.
+     */
+    private void coalesce(Class<? extends BedrockPacket> type, BedrockPacket packet) {
+        Long2ObjectMap<Held> latest = type == null ? null : this.movements.get(type);
+        if (latest == null) {
+            return;
+        }
+        long entityId = entityIdOf(packet);
+        Held entry = entityId < 0 ? null : latest.remove(entityId);
+        if (entry == null) {
+            return;
+        }
+        ReferenceCountUtil.release(entry.packet);
+        entry.packet = null; // Skipped when the queue is released
+        this.held--;
+    }
+
+    private void scheduleDrain() {
+        if (this.drainScheduled || !this.target.getPeer().getChannel().isActive()) {
+            return;
+        }
+        this.drainScheduled = true;
+        this.target.getPeer().getChannel().eventLoop().schedule(this::drain, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void drain() {
+        this.drainScheduled = false;
+        if (!this.target.getPeer().getChannel().isActive()) {
+            this.clear();
+            return;
+        }
+        if (this.isWritable()) {
+            this.release(false);
+        }
+        if (this.queues[Priority.WORLD.ordinal()].isEmpty()) {
+            this.releasePaced(false); // Held world data was received before any paced packet
+        }
+        if (this.held > 0 || !this.paced.isEmpty()) {
+            this.scheduleDrain();
+        }
+    }
+
+    /**
+     * Sends the held packets, highest priority first. They are flushed after each priority and every few packets, and
+     * the release stops as soon as the client falls behind again.
+     *
+     * @param all whether to send every held packet, even while the client cannot keep up and the chunks there are no
+     *            tokens for
+     */
+    private void release(boolean all) {
+        int unflushed = 0;
+        for (Deque<Held> queue : this.queues) {
+            Held entry;
+            while ((entry = queue.peekFirst()) != null) {
+                if (entry.packet != null && !all) {
+                    if (!this.isWritable()) {
+                        this.flush(unflushed);
+                        return;
+                    }
+                    if (!this.takeChunkTokens(entry.packet)) {
+                        this.pace(queue);
+                        break;
+                    }
+                }
+                queue.pollFirst();
+                if (entry.packet == null) {
+                    continue; // Replaced by a newer movement
+                }
+                this.held--;
+                Class<? extends BedrockPacket> type = typeOf(entry.packet);
+                Long2ObjectMap<Held> latest = type == null ? null : this.movements.get(type);
+                if (latest != null) {
+                    latest.remove(entityIdOf(entry.packet), entry);
+                }
+                this.target.sendPacket(entry.packet);
+                if (++unflushed >= RELEASE_FLUSH_PACKETS) {
+                    this.flush(unflushed);
+                    unflushed = 0;
+                }
+            }
+            this.flush(unflushed);
+            unflushed = 0;
+        }
+    }
+
+    /**
+     * Moves the held world data, starting with a chunk there are no tokens for, in front of the paced packets. It was
+     * received before them.
+     */
+    private void pace(Deque<Held> queue) {
+        Held entry;
+        while ((entry = queue.pollLast()) != null) {
+            if (entry.packet != null) {
+                this.paced.addFirst(entry.packet);
+                this.held--;
+            }
+        }
+    }
+
+    /**
+     * Sends the paced packets as far as there are tokens for the chunks among them.
+     *
+     * @param all whether to send every paced packet regardless of the tokens
+     */
+    private void releasePaced(boolean all) {
+        int unflushed = 0;
+        BedrockPacket packet;
+        while ((packet = this.paced.peekFirst()) != null) {
+            if (!all && (!this.isWritable() || !this.takeChunkTokens(packet))) {
+                break;
+            }
+            this.paced.pollFirst();
+            this.target.sendPacket(packet);
+            if (++unflushed >= RELEASE_FLUSH_PACKETS) {
+                this.flush(unflushed);
+                unflushed = 0;
+            }
+        }
+        this.flush(unflushed);
+    }
+
+    private void flush(int unflushed) {
+        if (unflushed > 0) {
+            this.target.getPeer().flush();
+        }
+    }
+
+    /**
+     * Takes the tokens for a chunk packet. The bucket may go into debt, so a chunk larger than the burst is still sent
+     * once the bucket is not empty.
+     *
+     * @return false if the chunk has to wait for more tokens
+     */
+    private boolean takeChunkTokens(BedrockPacket packet) {
+        int sections;
+        if (this.chunkRate <= 0) {
+            return true;
+        } else if (packet instanceof LevelChunkPacket chunk) {
+            sections = Math.max(1, chunk.getSubChunksLength());
+        } else if (packet instanceof SubChunkPacket subChunk) {
+            sections = subChunk.getSubChunks().size();
+        } else {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        this.chunkTokens = Math.min(this.chunkBurst, this.chunkTokens + (now - this.lastRefill) * this.chunkRate / 1_000_000_000D);
+        this.lastRefill = now;
+        if (this.chunkTokens <= 0) {
+            return false;
+        }
+        this.chunkTokens -= sections;
+        return true;
+    }
+
+    private void drop(BedrockPacket packet) {
+        ReferenceCountUtil.release(packet);
+        if (this.dropped++ % 1000 == 0) {
+            log.debug("Dropped {} cosmetic packets to {} which cannot keep up", this.dropped, this.target.getSocketAddress());
+        }
+    }
+
+    private Class<? extends BedrockPacket> typeOf(BedrockPacket packet) {
+        if (packet instanceof UnknownPacket unknown) {
+            return this.proxy.getPassthroughPacket(unknown.getPacketId());
+        }
+        return packet.getClass();
+    }
+
+    private static long entityIdOf(BedrockPacket packet) {
+        if (packet instanceof MoveEntityAbsolutePacket move) {
+            return move.getRuntimeEntityId();
+        } else if (packet instanceof SetEntityMotionPacket motion) {
+            return motion.getRuntimeEntityId();
+        } else if (packet instanceof UnknownPacket unknown) {
+            ByteBuf payload = unknown.getPayload().duplicate();
+            return payload.isReadable() ? VarInts.readUnsignedLong(payload) : -1;
+        }
+        return -1;
+    }
+
+    public enum Priority {
+        /**
+         * Movement corrections, latency probes, chat, entities being added or removed and everything not listed in
+         * another priority
+         */
+        CONTROL,
+        ENTITY,
+        WORLD,
+        COSMETIC
+    }
+
+    private static class Held {
+        private BedrockPacket packet;
+
+        private Held(BedrockPacket packet) {
+            this.packet = packet;
+        }
+    }
+}
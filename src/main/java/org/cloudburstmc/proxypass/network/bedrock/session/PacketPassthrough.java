@@ -0,0 +1,188 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockCodec;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockCodecHelper;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockPacketDefinition;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.ClientToServerHandshakePacket;
+import org.cloudburstmc.protocol.bedrock.packet.DisconnectPacket;
+import org.cloudburstmc.protocol.bedrock.packet.LoginPacket;
+import org.cloudburstmc.protocol.bedrock.packet.NetworkSettingsPacket;
+import org.cloudburstmc.protocol.bedrock.packet.PlayStatusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestNetworkSettingsPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ServerToClientHandshakePacket;
+import org.cloudburstmc.protocol.bedrock.packet.UnknownPacket;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
+
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Codecs which only decode the packets a translator asked for.
+ * <p>
+ * The IDs translated in each direction come from the {@link PacketTranslatorRegistry}. Every other packet is removed
+ * from both codecs of a session. The protocol library then reads it as an {@link UnknownPacket} holding the raw
+ * payload, which is forwarded as-is without being decoded and encoded again. The packet log decodes such a packet
+ * from its payload with {@link #decode} only when it is actually written.
+ * <p>
+ * A packet is only passed through when the client version and the server version use the same packet ID and the
+ * same serializer for it, so the raw bytes mean the same on both sides. Since a codec decodes one direction and
+ * encodes the other, packets handled in either direction are always decoded.
+ */
+@Log4j2
+public class PacketPassthrough {
+
+    private static final int MAX_PACKET_ID = 1023;
+    private static final List<Class<? extends BedrockPacketHandler>> HANDLERS = List.of(
+            UpstreamPacketHandler.class,
+            DownstreamInitialPacketHandler.class,
+            DownstreamPacketHandler.class
+    );
+    /**
+     * Needed by the protocol library itself while the connection is set up.
+     */
+    private static final Set<Class<? extends BedrockPacket>> ALWAYS_DECODED = Set.of(
+            RequestNetworkSettingsPacket.class,
+            NetworkSettingsPacket.class,
+            LoginPacket.class,
+            ServerToClientHandshakePacket.class,
+            ClientToServerHandshakePacket.class,
+            PlayStatusPacket.class,
+            DisconnectPacket.class
+    );
+
+    private final Int2ObjectMap<BedrockCodec> originalUpstreamCodecs;
+    private final BedrockCodec originalDownstreamCodec;
+    private final Int2ObjectMap<BedrockCodec> upstreamCodecs = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<BedrockCodec> downstreamCodecs = new Int2ObjectOpenHashMap<>();
+    /**
+     * Packet types forwarded undecoded by any protocol version, by ID
+     */
+    private final Int2ObjectMap<Class<? extends BedrockPacket>> passthroughPackets = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * @param upstreamCodecs  codecs clients can connect with, by protocol version
+     * @param downstreamCodec codec the server is joined with
+     * @param translators     packets which have to be decoded
+     */
+    public PacketPassthrough(Int2ObjectMap<BedrockCodec> upstreamCodecs, BedrockCodec downstreamCodec,
+                             PacketTranslatorRegistry translators) {
+        this.originalUpstreamCodecs = upstreamCodecs;
+        this.originalDownstreamCodec = downstreamCodec;
+
+        Set<Class<? extends BedrockPacket>> decoded = new HashSet<>(ALWAYS_DECODED);
+        decoded.addAll(translators.getTranslatedPackets());
+        for (Class<? extends BedrockPacket> handled : handledPackets()) {
+            if (decoded.add(handled)) {
+                log.warn("{} is handled but no translator declares it, it is always decoded", handled.getSimpleName());
+            }
+        }
+
+        for (Int2ObjectMap.Entry<BedrockCodec> entry : upstreamCodecs.int2ObjectEntrySet()) {
+            BedrockCodec upstream = entry.getValue();
+            BedrockCodec.Builder upstreamBuilder = upstream.toBuilder();
+            BedrockCodec.Builder downstreamBuilder = downstreamCodec.toBuilder();
+
+            // The client encodes serverbound packets with the IDs of its version, the server clientbound ones with its own
+            BitSet translatedIds = translators.getTranslatedIds(Direction.SERVERBOUND, upstream);
+            translatedIds.or(translators.getTranslatedIds(Direction.CLIENTBOUND, downstreamCodec));
+
+            int passthrough = 0;
+            for (int id = 0; id <= MAX_PACKET_ID; id++) {
+                BedrockPacketDefinition<? extends BedrockPacket> definition = definition(downstreamCodec, id);
+                if (definition == null || translatedIds.get(id)) {
+                    continue;
+                }
+                Class<? extends BedrockPacket> packetClass = definition.getFactory().get().getClass();
+                if (decoded.contains(packetClass)) {
+                    continue;
+                }
+                BedrockPacketDefinition<? extends BedrockPacket> upstreamDefinition = definition(upstream, id);
+                if (upstreamDefinition == null || upstreamDefinition.getSerializer() != definition.getSerializer()) {
+                    continue; // Encoded differently by the client version
+                }
+
+                upstreamBuilder.deregisterPacket(packetClass);
+                downstreamBuilder.deregisterPacket(packetClass);
+                this.passthroughPackets.put(id, packetClass);
+                passthrough++;
+            }
+
+            this.upstreamCodecs.put(entry.getIntKey(), upstreamBuilder.build());
+            this.downstreamCodecs.put(entry.getIntKey(), downstreamBuilder.build());
+            log.debug("Passing {} packet types through undecoded for protocol {}", passthrough, entry.getIntKey());
+        }
+    }
+
+    /**
+     * @return whether the codec decodes packets with this ID, instead of reading them as unknown packets
+     */
+    public static boolean isDecoded(BedrockCodec codec, int packetId) {
+        return definition(codec, packetId) != null;
+    }
+
+    private static BedrockPacketDefinition<? extends BedrockPacket> definition(BedrockCodec codec, int id) {
+        try {
+            return codec.getPacketDefinition(id);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return packet types any of the packet handlers has a handle method for
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<Class<? extends BedrockPacket>> handledPackets() {
+        Set<Class<? extends BedrockPacket>> handled = new HashSet<>();
+        for (Class<? extends BedrockPacketHandler> handler : HANDLERS) {
+            for (Method method : handler.getDeclaredMethods()) {
+                Class<?>[] parameters = method.getParameterTypes();
+                if (method.getName().equals("handle") && parameters.length == 1 && BedrockPacket.class.isAssignableFrom(parameters[0])) {
+                    handled.add((Class<? extends BedrockPacket>) parameters[0]);
+                }
+            }
+        }
+        return handled;
+    }
+
+    /**
+     * @return codec for clients of the given protocol version, or null if there is none
+     */
+    public BedrockCodec getUpstreamCodec(int protocolVersion) {
+        return this.upstreamCodecs.get(protocolVersion);
+    }
+
+    /**
+     * @return codec to join the server with on behalf of a client of the given protocol version
+     */
+    public BedrockCodec getDownstreamCodec(int protocolVersion) {
+        return this.downstreamCodecs.get(protocolVersion);
+    }
+
+    /**
+     * @return type of the packets with this ID if they are forwarded without being decoded, otherwise null
+     */
+    public Class<? extends BedrockPacket> getPassthroughPacket(int packetId) {
+        return this.passthroughPackets.get(packetId);
+    }
+
+    /**
+     * Decodes a packet which was forwarded undecoded, leaving its payload untouched.
+     *
+     * @param protocolVersion protocol version of the client
+     * @param upstream        whether the packet was received from the client
+     * @return the decoded packet, which the caller has to release
+     */
+    public BedrockPacket decode(UnknownPacket packet, BedrockCodecHelper helper, int protocolVersion, boolean upstream) {
+        BedrockCodec codec = upstream ? this.originalUpstreamCodecs.get(protocolVersion) : this.originalDownstreamCodec;
+        return codec.tryDecode(helper, packet.getPayload().duplicate(), packet.getPacketId());
+    }
+}
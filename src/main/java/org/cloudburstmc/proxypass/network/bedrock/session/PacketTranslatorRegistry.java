@@ -0,0 +1,182 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockCodec;
+import org.cloudburstmc.protocol.bedrock.codec.BedrockPacketDefinition;
+import org.cloudburstmc.protocol.bedrock.packet.*;
+import org.cloudburstmc.protocol.common.PacketSignal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The packets ProxyPass translates, grouped by the translator doing it.
+ * <p>
+ * Every translator declares the direction and the packet types it handles. These are the only packets which have to
+ * be decoded, {@link PacketPassthrough} forwards all others as raw bytes. Handling a packet through
+ * {@link #handle(Direction, BedrockPacketHandler, BedrockPacket)} counts the invocation and the time spent for its
+ * translator, which shows what the proxy pays for each kind of translation.
+ */
+public class PacketTranslatorRegistry {
+
+    private final List<Translator> translators = new ArrayList<>();
+    private final Map<Direction, Map<Class<? extends BedrockPacket>, Translator>> byPacket = new EnumMap<>(Direction.class);
+    private final Map<Direction, LongAdder> undecoded = new EnumMap<>(Direction.class);
+    private final Map<Direction, LongAdder> compressedBatches = new EnumMap<>(Direction.class);
+
+    public PacketTranslatorRegistry() {
+        for (Direction direction : Direction.values()) {
+            this.byPacket.put(direction, new HashMap<>());
+            this.undecoded.put(direction, new LongAdder());
+            this.compressedBatches.put(direction, new LongAdder());
+        }
+
+        // Client to server
+        this.register("login", Direction.SERVERBOUND, RequestNetworkSettingsPacket.class, LoginPacket.class);
+        this.register("client-blob-cache", Direction.SERVERBOUND, ClientCacheStatusPacket.class, ClientCacheBlobStatusPacket.class);
+        this.register("items", Direction.SERVERBOUND, InventoryTransactionPacket.class, PlayerAuthInputPacket.class,
+                ItemStackRequestPacket.class, CraftingEventPacket.class, MobEquipmentPacket.class,
+                MobArmorEquipmentPacket.class, CompletedUsingItemPacket.class);
+        this.register("view-distance", Direction.SERVERBOUND, RequestChunkRadiusPacket.class);
+
+        // Server to client
+        this.register("login", Direction.CLIENTBOUND, NetworkSettingsPacket.class, ServerToClientHandshakePacket.class,
+                StartGamePacket.class, DisconnectPacket.class);
+        this.register("chunks", Direction.CLIENTBOUND, LevelChunkPacket.class, SubChunkPacket.class, ChangeDimensionPacket.class);
+        this.register("blocks", Direction.CLIENTBOUND, UpdateBlockPacket.class, UpdateBlockSyncedPacket.class,
+                UpdateSubChunkBlocksPacket.class, AddEntityPacket.class);
+        this.register("items", Direction.CLIENTBOUND, InventoryContentPacket.class, InventorySlotPacket.class,
+                ContainerClosePacket.class, MobEquipmentPacket.class, MobArmorEquipmentPacket.class,
+                AddItemEntityPacket.class, AddPlayerPacket.class, CreativeContentPacket.class);
+        this.register("view-distance", Direction.CLIENTBOUND, ChunkRadiusUpdatedPacket.class);
+        this.register("dumps", Direction.CLIENTBOUND, AvailableEntityIdentifiersPacket.class,
+                CompressedBiomeDefinitionListPacket.class, BiomeDefinitionListPacket.class, CraftingDataPacket.class);
+    }
+
+    @SafeVarargs
+    private void register(String name, Direction direction, Class<? extends BedrockPacket>... packets) {
+        Translator translator = new Translator(name, direction, Set.of(packets));
+        for (Class<? extends BedrockPacket> packet : packets) {
+            if (this.byPacket.get(direction).putIfAbsent(packet, translator) != null) {
+                throw new IllegalStateException(packet.getSimpleName() + " is already translated " + direction);
+            }
+        }
+        this.translators.add(translator);
+    }
+
+    /**
+     * Passes a packet to the handler, recording the time taken for the translator of the packet.
+     */
+    public PacketSignal handle(Direction direction, BedrockPacketHandler handler, BedrockPacket packet) {
+        Translator translator = this.byPacket.get(direction).get(packet.getClass());
+        if (translator == null) {
+            if (packet instanceof UnknownPacket) {
+                this.undecoded.get(direction).increment();
+            }
+            return handler.handlePacket(packet);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return handler.handlePacket(packet);
+        } finally {
+            translator.invocations.increment();
+            translator.nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a batch forwarded without even being decompressed.
+     */
+    public void countCompressedPassthrough(Direction direction) {
+        this.compressedBatches.get(direction).increment();
+    }
+
+    /**
+     * @return packet types which have to be decoded in either direction
+     */
+    public Set<Class<? extends BedrockPacket>> getTranslatedPackets() {
+        Set<Class<? extends BedrockPacket>> packets = new HashSet<>();
+        for (Map<Class<? extends BedrockPacket>, Translator> translators : this.byPacket.values()) {
+            packets.addAll(translators.keySet());
+        }
+        return packets;
+    }
+
+    /**
+     * @return IDs the codec uses for the packets translated in the given direction
+     */
+    public BitSet getTranslatedIds(Direction direction, BedrockCodec codec) {
+        BitSet ids = new BitSet();
+        for (Class<? extends BedrockPacket> packet : this.byPacket.get(direction).keySet()) {
+            BedrockPacketDefinition<? extends BedrockPacket> definition = codec.getPacketDefinition(packet);
+            if (definition != null) {
+                ids.set(definition.getId());
+            }
+        }
+        return ids;
+    }
+
+    public List<Translator> getTranslators() {
+        return List.copyOf(this.translators);
+    }
+
+    /**
+     * @return one line per translator with its invocation count and time spent, followed by the number of packets
+     * forwarded without being decoded and of batches forwarded without being decompressed
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (Translator translator : this.translators) {
+            long invocations = translator.getInvocations();
+            long micros = TimeUnit.NANOSECONDS.toMicros(translator.getNanos());
+            lines.add(String.format("%-11s %-17s %10d packets %12d us total %8.1f us avg",
+                    translator.direction, translator.name, invocations, micros,
+                    invocations == 0 ? 0.0 : (double) micros / invocations));
+        }
+        for (Direction direction : Direction.values()) {
+            lines.add(String.format("%-11s %-17s %10d packets", direction, "undecoded", this.undecoded.get(direction).sum()));
+            lines.add(String.format("%-11s %-17s %10d batches", direction, "compressed", this.compressedBatches.get(direction).sum()));
+        }
+        return lines;
+    }
+
+    public enum Direction {
+        SERVERBOUND,
+        CLIENTBOUND
+    }
+
+    @Getter
+    public static class Translator {
+        private final String name;
+        private final Direction direction;
+        private final Set<Class<? extends BedrockPacket>> packets;
+        @Getter(AccessLevel.NONE)
+        private final LongAdder invocations = new LongAdder();
+        @Getter(AccessLevel.NONE)
+        private final LongAdder nanos = new LongAdder();
+
+        private Translator(String name, Direction direction, Set<Class<? extends BedrockPacket>> packets) {
+            this.name = name;
+            this.direction = direction;
+            this.packets = packets;
+        }
+
+        public long getInvocations() {
+            return this.invocations.sum();
+        }
+
+        public long getNanos() {
+            return this.nanos.sum();
+        }
+    }
+}
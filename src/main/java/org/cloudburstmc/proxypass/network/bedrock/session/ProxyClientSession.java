@@ -10,7 +10,9 @@ import org.cloudburstmc.protocol.bedrock.BedrockSession;
 import org.cloudburstmc.protocol.bedrock.netty.BedrockPacketWrapper;
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
 import org.cloudburstmc.protocol.common.PacketSignal;
+import org.cloudburstmc.proxypass.Configuration;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
 import org.cloudburstmc.proxypass.network.bedrock.util.TestUtils;
 
 @Getter
@@ -25,9 +27,36 @@ public class ProxyClientSession extends BedrockClientSession implements ProxySes
 
     private long playerId;
 
+    /**
+     * Queue of packets being translated off the event loop, or null if translation runs inline
+     */
+    private final OrderedTranslationQueue translationQueue;
+    private final OutboundBatcher outboundBatcher;
+    /**
+     * Packets to the client by priority, or null if they are always sent in order
+     */
+    private final OutboundScheduler outboundScheduler;
+
     public ProxyClientSession(BedrockPeer peer, int subClientId, ProxyPass proxyPass) {
         super(peer, subClientId);
         this.proxyPass = proxyPass;
+        Configuration configuration = proxyPass.getConfiguration();
+        this.outboundScheduler = configuration.isOutboundPriority() ? new OutboundScheduler(proxyPass,
+                configuration.getOutboundShedding(), configuration.getOutboundQueueLimit(),
+                configuration.getOutboundDisconnectLimit(), configuration.getChunkPacingRate(), configuration.getChunkPacingBurst()) : null;
+        this.outboundBatcher = new OutboundBatcher(configuration.getOutboundBatchMaxDelay(),
+                configuration.getOutboundBatchMaxPackets(), this.outboundScheduler);
+        this.translationQueue = proxyPass.getTranslationExecutor() == null ? null : new OrderedTranslationQueue(proxyPass.getTranslationExecutor(),
+                proxyPass.getPacketTranslators(), this.outboundBatcher);
+    }
+
+    /**
+     * @return number of packets from the server waiting to be translated or for the client to keep up. Paced chunks
+     * are not counted, they wait for their tokens even while the client keeps up.
+     */
+    public int getBacklog() {
+        return (this.translationQueue == null ? 0 : this.translationQueue.getDepth())
+                + (this.outboundScheduler == null ? 0 : this.outboundScheduler.getHeld());
     }
 
     @Override
@@ -40,8 +69,11 @@ public class ProxyClientSession extends BedrockClientSession implements ProxySes
 
         if (this.packetHandler == null) {
             log.warn("Received packet without a packet handler for {}:{}: {}", new Object[]{this.getSocketAddress(), this.subClientId, packet});
-        } else if (this.packetHandler.handlePacket(packet) == PacketSignal.UNHANDLED && this.sendSession != null) {
-            this.sendSession.sendPacket(ReferenceCountUtil.retain(packet));
+        } else if (this.translationQueue != null) {
+            this.translationQueue.handle(packet, this.packetHandler, this.sendSession);
+        } else if (this.proxyPass.getPacketTranslators().handle(Direction.CLIENTBOUND, this.packetHandler, packet) == PacketSignal.UNHANDLED
+                && this.sendSession != null) {
+            this.outboundBatcher.send(this.sendSession, ReferenceCountUtil.retain(packet));
         }
     }
 }
@@ -7,12 +7,25 @@ import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.protocol.bedrock.BedrockPeer;
 import org.cloudburstmc.protocol.bedrock.BedrockServerSession;
 import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
 import org.cloudburstmc.protocol.bedrock.netty.BedrockPacketWrapper;
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacket;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
 import org.cloudburstmc.protocol.common.PacketSignal;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.chunk.ClientBlobCache;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
+import org.cloudburstmc.proxypass.network.bedrock.translation.BlockTranslation;
+import org.cloudburstmc.proxypass.network.bedrock.translation.InventoryShadow;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemIdTranslationTable;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemTranslator;
+import org.cloudburstmc.proxypass.network.bedrock.translation.LoginPacketCache;
+import org.cloudburstmc.proxypass.network.bedrock.translation.RuntimeIdTranslationTable;
 import org.cloudburstmc.proxypass.network.bedrock.util.TestUtils;
 
+import java.util.List;
+
 @Getter
 @Log4j2
 public class ProxyServerSession extends BedrockServerSession implements ProxySession {
@@ -22,10 +35,111 @@ public class ProxyServerSession extends BedrockServerSession implements ProxySes
     private BedrockSession sendSession;
     @Setter
     private ProxyPlayerSession player;
+    private final ClientBlobCache clientBlobCache;
+    private final ItemTranslator serverItemTranslator; // Items sent by the client to the server
+    private final ItemTranslator clientItemTranslator; // Items sent by the server to the client
+    private final InventoryShadow inventoryShadow;
+    private final OutboundBatcher outboundBatcher;
+    private final ViewDistanceGovernor.ViewDistance viewDistance = new ViewDistanceGovernor.ViewDistance();
+    /**
+     * Item IDs of the server and of the client version, set from the StartGamePacket.
+     */
+    @Setter
+    private volatile ItemIdTranslationTable itemTranslationTable = ItemIdTranslationTable.EMPTY;
+    /**
+     * Whether the server sends block network IDs as hashes of the block states, set from its StartGamePacket.
+     */
+    @Setter
+    private volatile boolean blockNetworkIdsHashed;
 
     public ProxyServerSession(BedrockPeer peer, int subClientId, ProxyPass proxyPass) {
         super(peer, subClientId);
         this.proxyPass = proxyPass;
+        this.clientBlobCache = new ClientBlobCache(proxyPass.getConfiguration().getClientBlobCacheSize());
+        this.serverItemTranslator = ItemTranslator.toServer(proxyPass.getConfiguration().getItemTranslationCacheSize());
+        this.clientItemTranslator = ItemTranslator.toClient(proxyPass.getConfiguration().getItemTranslationCacheSize());
+        this.inventoryShadow = new InventoryShadow(this.clientItemTranslator);
+        this.outboundBatcher = new OutboundBatcher(proxyPass.getConfiguration().getOutboundBatchMaxDelay(),
+                proxyPass.getConfiguration().getOutboundBatchMaxPackets(), null);
+    }
+
+    /**
+     * @return block translation table for the version the client joined with
+     */
+    public RuntimeIdTranslationTable getBlockTranslationTable() {
+        RuntimeIdTranslationTable table = this.proxyPass.getBlockTranslationTable(this.getCodec().getProtocolVersion());
+        return this.blockNetworkIdsHashed ? table.getHashed() : table;
+    }
+
+    /**
+     * @return block definitions of the server, keyed the way this session sends block network IDs
+     */
+    public DefinitionRegistry<BlockDefinition> getServerBlockDefinitions() {
+        BlockTranslation translation = this.proxyPass.getBlockTranslation();
+        return this.blockNetworkIdsHashed ? translation.getServerHashedBlockDefinitions() : translation.getServerBlockDefinitions();
+    }
+
+    /**
+     * @return block definitions of the client, keyed the way this session sends block network IDs
+     */
+    public DefinitionRegistry<BlockDefinition> getClientBlockDefinitions() {
+        BlockTranslation translation = this.proxyPass.getBlockTranslation();
+        return this.blockNetworkIdsHashed ? translation.getClientHashedBlockDefinitions() : translation.getClientBlockDefinitions();
+    }
+
+    /**
+     * Translates an item sent by the client to the item and block IDs of the server.
+     * Only called from the event loop of this session.
+     *
+     * @return the translated item, or {@code item} itself if nothing changes
+     */
+    public ItemData translateItemToServer(ItemData item) {
+        return this.serverItemTranslator.translate(item, this.getBlockTranslationTable(), this.getServerBlockDefinitions(),
+                this.itemTranslationTable);
+    }
+
+    /**
+     * Translates an item sent by the server to the item and block IDs of the client.
+     * Only called from the event loop of the downstream session.
+     *
+     * @return the translated item, or {@code item} itself if nothing changes
+     */
+    public ItemData translateItemToClient(ItemData item) {
+        return this.clientItemTranslator.translate(item, this.getBlockTranslationTable(), this.getClientBlockDefinitions(),
+                this.itemTranslationTable);
+    }
+
+    /**
+     * @return the creative items translated for this session, shared with every session using the same tables
+     */
+    public ItemData[] translateCreativeItemsToClient(LoginPacketCache.CreativeItems creativeItems) {
+        return creativeItems.translate(this.getBlockTranslationTable(), this.getClientBlockDefinitions(), this.itemTranslationTable);
+    }
+
+    /**
+     * @return the recipes translated for this session, shared with every session using the same tables
+     */
+    public LoginPacketCache.RecipeLists translateRecipesToClient(LoginPacketCache.Recipes recipes) {
+        return recipes.translate(this.getBlockTranslationTable(), this.getClientBlockDefinitions(), this.itemTranslationTable);
+    }
+
+    /**
+     * Translates the contents of a container sent by the server in place, reusing the translated items of the slots
+     * that did not change since the container was last sent.
+     * Only called from the event loop of the downstream session.
+     */
+    public void translateContainerToClient(int containerId, List<ItemData> contents) {
+        this.inventoryShadow.translateContents(containerId, contents, this.getBlockTranslationTable(),
+                this.getClientBlockDefinitions(), this.itemTranslationTable);
+    }
+
+    /**
+     * Translates a single slot of a container sent by the server.
+     * Only called from the event loop of the downstream session.
+     */
+    public ItemData translateSlotToClient(int containerId, int slot, ItemData item) {
+        return this.inventoryShadow.translateSlot(containerId, slot, item, this.getBlockTranslationTable(),
+                this.getClientBlockDefinitions(), this.itemTranslationTable);
     }
 
     @Override
@@ -36,13 +150,14 @@ public class ProxyServerSession extends BedrockServerSession implements ProxySes
         }
 
         if (proxyPass.getConfiguration().isPacketTesting()) {
-            TestUtils.testPacket(this, ProxyPass.SERVER_CODEC, wrapper);
+            TestUtils.testPacket(this, this.getCodec(), wrapper);
         }
 
         if (this.packetHandler == null) {
             log.warn("Received packet without a packet handler for {}:{}: {}", new Object[]{this.getSocketAddress(), this.subClientId, packet});
-        } else if (this.packetHandler.handlePacket(packet) == PacketSignal.UNHANDLED && this.sendSession != null) {
-            this.sendSession.sendPacket(ReferenceCountUtil.retain(packet));
+        } else if (this.proxyPass.getPacketTranslators().handle(Direction.SERVERBOUND, this.packetHandler, packet) == PacketSignal.UNHANDLED
+                && this.sendSession != null) {
+            this.outboundBatcher.send(this.sendSession, ReferenceCountUtil.retain(packet));
         }
     }
 }
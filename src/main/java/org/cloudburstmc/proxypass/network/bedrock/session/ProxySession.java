@@ -11,4 +11,9 @@ public interface ProxySession {
     BedrockSession getSendSession();
 
     void setSendSession(BedrockSession session);
+
+    /**
+     * @return batcher of the packets this session forwards to its send session
+     */
+    OutboundBatcher getOutboundBatcher();
 }
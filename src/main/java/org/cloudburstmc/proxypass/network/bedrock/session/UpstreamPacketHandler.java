@@ -6,24 +6,39 @@ import java.security.interfaces.ECPublicKey;
 import java.util.List;
 import java.util.Map;
 
+import org.cloudburstmc.protocol.bedrock.codec.BedrockCodec;
 import org.cloudburstmc.protocol.bedrock.data.PacketCompressionAlgorithm;
 import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
 import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
-import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData.Builder;
+import org.cloudburstmc.protocol.bedrock.data.inventory.itemstack.request.ItemStackRequest;
+import org.cloudburstmc.protocol.bedrock.data.inventory.itemstack.request.action.CraftResultsDeprecatedAction;
+import org.cloudburstmc.protocol.bedrock.data.inventory.itemstack.request.action.ItemStackRequestAction;
 import org.cloudburstmc.protocol.bedrock.data.inventory.transaction.InventoryActionData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.transaction.ItemUseTransaction;
 import org.cloudburstmc.protocol.bedrock.packet.BedrockPacketHandler;
+import org.cloudburstmc.protocol.bedrock.packet.ClientCacheBlobStatusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ClientCacheMissResponsePacket;
 import org.cloudburstmc.protocol.bedrock.packet.ClientCacheStatusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.CompletedUsingItemPacket;
+import org.cloudburstmc.protocol.bedrock.packet.CraftingEventPacket;
 import org.cloudburstmc.protocol.bedrock.packet.InventoryTransactionPacket;
+import org.cloudburstmc.protocol.bedrock.packet.ItemStackRequestPacket;
 import org.cloudburstmc.protocol.bedrock.packet.LoginPacket;
+import org.cloudburstmc.protocol.bedrock.packet.MobArmorEquipmentPacket;
 import org.cloudburstmc.protocol.bedrock.packet.MobEquipmentPacket;
 import org.cloudburstmc.protocol.bedrock.packet.NetworkSettingsPacket;
 import org.cloudburstmc.protocol.bedrock.packet.PlayStatusPacket;
+import org.cloudburstmc.protocol.bedrock.packet.PlayerAuthInputPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestChunkRadiusPacket;
 import org.cloudburstmc.protocol.bedrock.packet.RequestNetworkSettingsPacket;
 import org.cloudburstmc.protocol.bedrock.util.ChainValidationResult;
 import org.cloudburstmc.protocol.bedrock.util.EncryptionUtils;
 import org.cloudburstmc.protocol.bedrock.util.JsonUtils;
 import org.cloudburstmc.protocol.common.PacketSignal;
+import org.cloudburstmc.proxypass.Configuration;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.session.PacketTranslatorRegistry.Direction;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemIdTranslationTable;
 import org.cloudburstmc.proxypass.network.bedrock.util.ForgeryUtils;
 import org.jose4j.json.JsonUtil;
 import org.jose4j.json.internal.json_simple.JSONObject;
@@ -61,82 +76,142 @@ public class UpstreamPacketHandler implements BedrockPacketHandler {
 
     @Override
     public PacketSignal handle(ClientCacheStatusPacket packet) {
-        packet.setSupported(false); // HEHE BANDWIDTH GO BRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRRR
+        this.session.getClientBlobCache().setEnabled(packet.isSupported() && this.proxy.getConfiguration().isClientBlobCache());
+        packet.setSupported(false); // The proxy serves the blob cache itself, so the server has to send full chunks
         return PacketSignal.UNHANDLED;
     }
 
     @Override
-    public PacketSignal handle(InventoryTransactionPacket packet) {
-        // Convert inventory transaction packet block definition
-        BlockDefinition blockDefinition = packet.getBlockDefinition();
-        if (blockDefinition != null) {
-            BlockDefinition newBlockDefinition = this.proxy.getServerBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsClientToServer().getOrDefault(blockDefinition.getRuntimeId(), 0));
-            packet.setBlockDefinition(newBlockDefinition);
+    public PacketSignal handle(ClientCacheBlobStatusPacket packet) {
+        ClientCacheMissResponsePacket response = this.session.getClientBlobCache().resolve(packet.getAcks(), packet.getNaks());
+        if (response != null) {
+            this.session.sendPacket(response);
         }
+        return PacketSignal.HANDLED; // The server does not know about these blobs
+    }
 
-        // Convert item in hand
-        ItemData packetItemInHand = packet.getItemInHand();
-        if (packetItemInHand != null && packetItemInHand.getBlockDefinition() != null) {
-            // TODO: Create general conversion functions to convert ItemData, etc
-            BlockDefinition newHandBlockDefinition = this.proxy.getServerBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsClientToServer().getOrDefault(packetItemInHand.getDefinition().getRuntimeId(), 0));
-            
-            Builder packetItemInHandBuilder = packetItemInHand.toBuilder();
-            packetItemInHandBuilder.blockDefinition(newHandBlockDefinition);
-
-            packet.setItemInHand(packetItemInHandBuilder.build());
-        }
+    @Override
+    public void onDisconnect(String reason) {
+        this.session.getClientBlobCache().clear();
+        this.proxy.getViewDistanceGovernor().remove(this.session);
+    }
 
-        // Convert inventoryActions
-        List<InventoryActionData> inventoryActions = packet.getActions();
-        for (int i=0; i < inventoryActions.size(); i++) {
-            InventoryActionData action = inventoryActions.get(i);
-
-            ItemData fromItem = action.getFromItem();
-            if (fromItem != null && fromItem.getBlockDefinition() != null) {
-                BlockDefinition newHandBlockDefinition = this.proxy.getServerBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsClientToServer().getOrDefault(fromItem.getDefinition().getRuntimeId(), 0));
-            
-                Builder fromItemBuilder = fromItem.toBuilder();
-                fromItemBuilder.blockDefinition(newHandBlockDefinition);
-                fromItem = fromItemBuilder.build();
-            }
+    @Override
+    public PacketSignal handle(RequestChunkRadiusPacket packet) {
+        this.proxy.getViewDistanceGovernor().onRequest(this.session, packet);
+        return PacketSignal.UNHANDLED;
+    }
 
-            ItemData toItem = action.getToItem();
-            if (toItem != null && toItem.getBlockDefinition() != null) {
-                BlockDefinition newHandBlockDefinition = this.proxy.getServerBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsClientToServer().getOrDefault(toItem.getDefinition().getRuntimeId(), 0));
-            
-                Builder toItemBuilder = toItem.toBuilder();
-                toItemBuilder.blockDefinition(newHandBlockDefinition);
-                toItem = toItemBuilder.build();
-            }
+    @Override
+    public PacketSignal handle(InventoryTransactionPacket packet) {
+        packet.setBlockDefinition(this.translateBlockToServer(packet.getBlockDefinition()));
+        packet.setItemInHand(this.session.translateItemToServer(packet.getItemInHand()));
+        this.translateActionsToServer(packet.getActions());
+        return PacketSignal.UNHANDLED;
+    }
 
+    @Override
+    public PacketSignal handle(PlayerAuthInputPacket packet) {
+        // Clients with server authoritative block breaking send their item use here instead of in a transaction
+        ItemUseTransaction transaction = packet.getItemUseTransaction();
+        if (transaction != null) {
+            transaction.setBlockDefinition(this.translateBlockToServer(transaction.getBlockDefinition()));
+            transaction.setItemInHand(this.session.translateItemToServer(transaction.getItemInHand()));
+            this.translateActionsToServer(transaction.getActions());
+        }
+        if (packet.getItemStackRequest() != null) {
+            this.translateRequestToServer(packet.getItemStackRequest());
+        }
+        return PacketSignal.UNHANDLED;
+    }
 
-            InventoryActionData newInventoryAction = new InventoryActionData(action.getSource(), action.getSlot(), fromItem, toItem);
-            inventoryActions.set(i, newInventoryAction);
+    @Override
+    public PacketSignal handle(ItemStackRequestPacket packet) {
+        for (ItemStackRequest request : packet.getRequests()) {
+            this.translateRequestToServer(request);
         }
+        return PacketSignal.UNHANDLED;
+    }
 
+    @Override
+    public PacketSignal handle(CraftingEventPacket packet) {
+        this.translateItemsToServer(packet.getInputs());
+        this.translateItemsToServer(packet.getOutputs());
         return PacketSignal.UNHANDLED;
     }
 
     @Override
     public PacketSignal handle(MobEquipmentPacket packet) {
-        ItemData packetItem = packet.getItem();
-        BlockDefinition newBlockDefinition = this.proxy.getServerBlockDefinitions().getDefinition(this.proxy.getRIDReplacementsClientToServer().getOrDefault(packetItem.getDefinition().getRuntimeId(), 0));
-        
-        Builder packetItemBuilder = packetItem.toBuilder();
-        packetItemBuilder.blockDefinition(newBlockDefinition);
+        packet.setItem(this.session.translateItemToServer(packet.getItem()));
+        return PacketSignal.UNHANDLED;
+    }
 
-        packet.setItem(packetItemBuilder.build());
+    @Override
+    public PacketSignal handle(MobArmorEquipmentPacket packet) {
+        packet.setHelmet(this.session.translateItemToServer(packet.getHelmet()));
+        packet.setChestplate(this.session.translateItemToServer(packet.getChestplate()));
+        packet.setLeggings(this.session.translateItemToServer(packet.getLeggings()));
+        packet.setBoots(this.session.translateItemToServer(packet.getBoots()));
+        return PacketSignal.UNHANDLED;
+    }
 
+    @Override
+    public PacketSignal handle(CompletedUsingItemPacket packet) {
+        ItemIdTranslationTable itemTable = this.session.getItemTranslationTable();
+        if (!itemTable.isIdentity() && packet.getItemId() != 0) {
+            packet.setItemId(itemTable.toServer(packet.getItemId()));
+        }
         return PacketSignal.UNHANDLED;
     }
 
+    private BlockDefinition translateBlockToServer(BlockDefinition definition) {
+        if (definition == null) {
+            return null;
+        }
+        int runtimeId = this.session.getBlockTranslationTable().toServer(definition.getRuntimeId());
+        return this.session.getServerBlockDefinitions().getDefinition(runtimeId);
+    }
+
+    private void translateItemsToServer(List<ItemData> items) {
+        for (int i = 0; i < items.size(); i++) {
+            items.set(i, this.session.translateItemToServer(items.get(i)));
+        }
+    }
+
+    private void translateActionsToServer(List<InventoryActionData> actions) {
+        // Actions are only replaced when one of their items changed
+        for (int i = 0; i < actions.size(); i++) {
+            InventoryActionData action = actions.get(i);
+            ItemData fromItem = this.session.translateItemToServer(action.getFromItem());
+            ItemData toItem = this.session.translateItemToServer(action.getToItem());
+            if (fromItem != action.getFromItem() || toItem != action.getToItem()) {
+                actions.set(i, new InventoryActionData(action.getSource(), action.getSlot(), fromItem, toItem));
+            }
+        }
+    }
+
+    /**
+     * Other actions refer to items by the network IDs of their stacks, which the server assigned.
+     */
+    private void translateRequestToServer(ItemStackRequest request) {
+        for (ItemStackRequestAction action : request.getActions()) {
+            if (action instanceof CraftResultsDeprecatedAction craftResults) {
+                ItemData[] results = craftResults.getResultItems();
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = this.session.translateItemToServer(results[i]);
+                }
+            }
+        }
+    }
+
     @Override
     public PacketSignal handle(RequestNetworkSettingsPacket packet) {
         int protocolVersion = packet.getProtocolVersion();
 
-        if (protocolVersion != ProxyPass.SERVER_PROTOCOL_VERSION) {
+        BedrockCodec codec = this.proxy.getUpstreamCodec(protocolVersion);
+        if (codec == null) {
             PlayStatusPacket status = new PlayStatusPacket();
-            if (protocolVersion > ProxyPass.SERVER_PROTOCOL_VERSION) {
+            if (protocolVersion > this.proxy.getBlockTranslation().getNewestClientProtocolVersion()) {
                 status.setStatus(PlayStatusPacket.Status.LOGIN_FAILED_SERVER_OLD);
             } else {
                 status.setStatus(PlayStatusPacket.Status.LOGIN_FAILED_CLIENT_OLD);
@@ -145,14 +220,17 @@ public class UpstreamPacketHandler implements BedrockPacketHandler {
             session.sendPacketImmediately(status);
             return PacketSignal.HANDLED;
         }
-        session.setCodec(ProxyPass.SERVER_CODEC);
+        session.setCodec(codec);
 
+        Configuration configuration = this.proxy.getConfiguration();
+        PacketCompressionAlgorithm algorithm = configuration.getCompressionAlgorithm().getAlgorithm();
         NetworkSettingsPacket networkSettingsPacket = new NetworkSettingsPacket();
-        networkSettingsPacket.setCompressionThreshold(0);
-        networkSettingsPacket.setCompressionAlgorithm(PacketCompressionAlgorithm.ZLIB);
+        networkSettingsPacket.setCompressionThreshold(configuration.getCompressionThreshold());
+        networkSettingsPacket.setCompressionAlgorithm(algorithm);
 
         session.sendPacketImmediately(networkSettingsPacket);
-        session.setCompression(PacketCompressionAlgorithm.ZLIB);
+        CompressionHandler.install(session, Direction.SERVERBOUND, algorithm, configuration.getCompressionLevel(),
+                configuration.getCompressionThreshold(), this.proxy.isForwardingCompressedBatches());
         return PacketSignal.HANDLED;
     }
 
@@ -202,7 +280,7 @@ public class UpstreamPacketHandler implements BedrockPacketHandler {
     private void initializeOfflineProxySession() {
         log.debug("Initializing proxy session");
         this.proxy.newClient(this.proxy.getTargetAddress(), downstream -> {
-            downstream.setCodec(ProxyPass.CLIENT_CODEC);
+            downstream.setCodec(this.proxy.getDownstreamCodec(this.session.getCodec().getProtocolVersion()));
             downstream.setSendSession(this.session);
             this.session.setSendSession(downstream);
 
@@ -261,7 +339,7 @@ public class UpstreamPacketHandler implements BedrockPacketHandler {
                 log.error("Failed to get login chain", e);
             }
 
-            downstream.setCodec(ProxyPass.CLIENT_CODEC);
+            downstream.setCodec(this.proxy.getDownstreamCodec(this.session.getCodec().getProtocolVersion()));
             downstream.setSendSession(this.session);
             this.session.setSendSession(downstream);
 
@@ -0,0 +1,183 @@
+package org.cloudburstmc.proxypass.network.bedrock.session;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.protocol.bedrock.BedrockSession;
+import org.cloudburstmc.protocol.bedrock.packet.ChunkRadiusUpdatedPacket;
+import org.cloudburstmc.protocol.bedrock.packet.RequestChunkRadiusPacket;
+import org.cloudburstmc.proxypass.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shrinks the view distance of players while the proxy is overloaded and restores it as the load drops.
+ * <p>
+ * The radius a client requests is capped before it reaches the server, and so is the radius the server grants. Every
+ * couple of seconds the cap is lowered by a step while the CPU load of the proxy is above the high mark, and raised
+ * again while it is below the low mark. Each player also has a cap of their own, lowered while more packets to them
+ * are waiting to be translated or sent than the max backlog. Whenever the cap of a player changes, the proxy requests
+ * the new radius from the server on their behalf.
+ * <p>
+ * The load is sampled on a thread of its own. The cap of each player is updated on the event loop of the session to
+ * their server, which owns the scheduler their backlog is read from and sends the new request.
+ */
+@Log4j2
+public class ViewDistanceGovernor {
+
+    private static final int STEP = 2;
+    private static final long INTERVAL_SECONDS = 2;
+    private static final int UNCAPPED = Integer.MAX_VALUE;
+
+    private final Set<ProxyServerSession> sessions = ConcurrentHashMap.newKeySet();
+    private final boolean enabled;
+    private final int minRadius;
+    private final double cpuHigh;
+    private final double cpuLow;
+    private final int maxBacklog;
+    private volatile int cap = UNCAPPED;
+    private ScheduledExecutorService executor;
+
+    public ViewDistanceGovernor(Configuration configuration) {
+        this.enabled = configuration.isViewDistanceGovernor();
+        this.minRadius = configuration.getViewDistanceMin();
+        this.cpuHigh = configuration.getViewDistanceCpuHigh();
+        this.cpuLow = configuration.getViewDistanceCpuLow();
+        this.maxBacklog = configuration.getViewDistanceMaxBacklog();
+    }
+
+    public void start() {
+        if (this.enabled) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("proxypass-view-distance", true));
+            this.executor.scheduleAtFixedRate(this::tick, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public void stop() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    /**
+     * Caps the radius a client asks the server for.
+     */
+    public void onRequest(ProxyServerSession session, RequestChunkRadiusPacket packet) {
+        ViewDistance viewDistance = session.getViewDistance();
+        viewDistance.requested = packet.getRadius();
+        viewDistance.maxRadius = packet.getMaxRadius();
+        if (this.enabled) {
+            this.sessions.add(session);
+        }
+        viewDistance.sent = this.capped(viewDistance);
+        packet.setRadius(viewDistance.sent);
+    }
+
+    /**
+     * Caps the radius the server grants a client.
+     */
+    public void onUpdated(ProxyServerSession session, ChunkRadiusUpdatedPacket packet) {
+        ViewDistance viewDistance = session.getViewDistance();
+        if (viewDistance.requested > 0) {
+            packet.setRadius(Math.min(packet.getRadius(), this.capped(viewDistance)));
+        }
+    }
+
+    public void remove(ProxyServerSession session) {
+        this.sessions.remove(session);
+    }
+
+    private int capped(ViewDistance viewDistance) {
+        return Math.min(viewDistance.requested, Math.min(this.cap, viewDistance.cap));
+    }
+
+    private void tick() {
+        try {
+            double cpu = processCpuLoad();
+            int largest = 0;
+            for (ProxyServerSession session : this.sessions) {
+                largest = Math.max(largest, session.getViewDistance().requested);
+            }
+            int cap = this.cap;
+            if (cpu >= this.cpuHigh) {
+                cap = Math.max(this.minRadius, Math.min(cap, largest) - STEP);
+            } else if (cpu >= 0 && cpu < this.cpuLow && cap != UNCAPPED) {
+                cap = cap + STEP >= largest ? UNCAPPED : cap + STEP;
+            }
+            if (cap != this.cap) {
+                log.info("{} view distance to {} at {}% CPU", cap < this.cap ? "Reducing" : "Restoring",
+                        cap == UNCAPPED ? "what players request" : cap, Math.round(cpu * 100));
+                this.cap = cap;
+            }
+
+            for (ProxyServerSession session : this.sessions) {
+                BedrockSession downstream = session.getSendSession();
+                if (!session.getPeer().getChannel().isActive() || downstream == null) {
+                    this.sessions.remove(session);
+                    continue;
+                }
+                downstream.getPeer().getChannel().eventLoop().execute(() -> this.update(session, downstream));
+            }
+        } catch (Throwable t) {
+            log.error("Failed to update view distances", t);
+        }
+    }
+
+    /**
+     * Runs on the event loop of the downstream session.
+     */
+    private void update(ProxyServerSession session, BedrockSession downstream) {
+        ViewDistance viewDistance = session.getViewDistance();
+        int backlog = ((ProxyClientSession) downstream).getBacklog();
+        if (backlog > this.maxBacklog) {
+            viewDistance.cap = Math.max(this.minRadius, Math.min(viewDistance.cap, viewDistance.sent) - STEP);
+        } else if (backlog <= this.maxBacklog / 2 && viewDistance.cap != UNCAPPED) {
+            viewDistance.cap = viewDistance.cap + STEP >= viewDistance.requested ? UNCAPPED : viewDistance.cap + STEP;
+        }
+
+        int radius = this.capped(viewDistance);
+        if (radius != viewDistance.sent) {
+            viewDistance.sent = radius;
+            RequestChunkRadiusPacket request = new RequestChunkRadiusPacket();
+            request.setRadius(radius);
+            request.setMaxRadius(viewDistance.maxRadius);
+            downstream.sendPacket(request);
+        }
+    }
+
+    /**
+     * @return CPU load of this process from 0 to 1, or a negative value if it is not available
+     */
+    private static double processCpuLoad() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean sunBean) {
+            return sunBean.getProcessCpuLoad();
+        }
+        return -1;
+    }
+
+    /**
+     * View distance of one player.
+     */
+    public static class ViewDistance {
+        /**
+         * Radius the client asked for, 0 until it asked
+         */
+        private volatile int requested;
+        private volatile int maxRadius;
+        /**
+         * Radius last requested from the server
+         */
+        private volatile int sent;
+        /**
+         * Cap from the backlog of this player
+         */
+        private volatile int cap = UNCAPPED;
+    private ScheduledExecutorService executor;
+    }
+}
@@ -0,0 +1,160 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+import java.util.Arrays;
+
+/**
+ * Minimal perfect hash from the hashed block network IDs of a palette to their sequential runtime IDs.
+ * <p>
+ * Built with hash and displace: the hashes are split into small buckets and each bucket gets a seed that sends all of
+ * its hashes to free slots of a table with exactly one slot per hash. A lookup is two mixes, two array reads and a
+ * comparison against the stored hash, in both directions, with no allocation and no probing.
+ */
+public final class BlockHashIndex {
+
+    private static final int NOT_FOUND = -1;
+    private static final int KEYS_PER_BUCKET = 4;
+    private static final int MAX_SEED = 1 << 24;
+
+    /**
+     * Sequential runtime ID to hashed network ID.
+     */
+    private final int[] hashes;
+    private final int[] seeds;
+    /**
+     * Slot to sequential runtime ID.
+     */
+    private final int[] slots;
+
+    /**
+     * @param hashes hashed network ID of every sequential runtime ID. If two states share a hash, the first one wins.
+     */
+    public BlockHashIndex(int[] hashes) {
+        this.hashes = hashes;
+
+        IntSet seen = new IntOpenHashSet(hashes.length);
+        IntArrayList keys = new IntArrayList(hashes.length);
+        for (int runtimeId = 0; runtimeId < hashes.length; runtimeId++) {
+            if (seen.add(hashes[runtimeId])) {
+                keys.add(runtimeId);
+            }
+        }
+
+        this.seeds = new int[Math.max(1, keys.size() / KEYS_PER_BUCKET)];
+        this.slots = new int[keys.size()];
+        Arrays.fill(this.slots, NOT_FOUND);
+
+        IntArrayList[] buckets = new IntArrayList[this.seeds.length];
+        for (int i = 0; i < keys.size(); i++) {
+            int runtimeId = keys.getInt(i);
+            int bucket = bucket(hashes[runtimeId], this.seeds.length);
+            if (buckets[bucket] == null) {
+                buckets[bucket] = new IntArrayList(KEYS_PER_BUCKET);
+            }
+            buckets[bucket].add(runtimeId);
+        }
+
+        // Place the largest buckets first, while most slots are still free
+        Integer[] order = new Integer[buckets.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(size(buckets[b]), size(buckets[a])));
+
+        int[] candidateSlots = new int[KEYS_PER_BUCKET];
+        for (int bucket : order) {
+            IntArrayList runtimeIds = buckets[bucket];
+            if (runtimeIds == null) {
+                break; // Only empty buckets are left
+            }
+            if (candidateSlots.length < runtimeIds.size()) {
+                candidateSlots = new int[runtimeIds.size()];
+            }
+            this.seeds[bucket] = this.findSeed(runtimeIds, candidateSlots);
+            for (int i = 0; i < runtimeIds.size(); i++) {
+                this.slots[candidateSlots[i]] = runtimeIds.getInt(i);
+            }
+        }
+    }
+
+    private int findSeed(IntArrayList runtimeIds, int[] candidateSlots) {
+        for (int seed = 1; seed < MAX_SEED; seed++) {
+            if (this.tryPlace(runtimeIds, seed, candidateSlots)) {
+                return seed;
+            }
+        }
+        throw new IllegalStateException("Unable to build a perfect hash for " + this.slots.length + " block states");
+    }
+
+    private boolean tryPlace(IntArrayList runtimeIds, int seed, int[] candidateSlots) {
+        for (int i = 0; i < runtimeIds.size(); i++) {
+            int slot = slot(this.hashes[runtimeIds.getInt(i)], seed, this.slots.length);
+            if (this.slots[slot] != NOT_FOUND) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (candidateSlots[j] == slot) {
+                    return false;
+                }
+            }
+            candidateSlots[i] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * @return sequential runtime ID of a hashed network ID, or -1 if the palette does not contain it
+     */
+    public int indexOf(int hash) {
+        if (this.slots.length == 0) {
+            return NOT_FOUND;
+        }
+        int runtimeId = this.slots[slot(hash, this.seeds[bucket(hash, this.seeds.length)], this.slots.length)];
+        return runtimeId != NOT_FOUND && this.hashes[runtimeId] == hash ? runtimeId : NOT_FOUND;
+    }
+
+    /**
+     * @return hashed network ID of a sequential runtime ID, or the hash of runtime ID 0 if it is out of range
+     */
+    public int hashOf(int runtimeId) {
+        if (runtimeId < 0 || runtimeId >= this.hashes.length) {
+            return this.hashes.length == 0 ? 0 : this.hashes[0];
+        }
+        return this.hashes[runtimeId];
+    }
+
+    public int size() {
+        return this.hashes.length;
+    }
+
+    int[] hashes() {
+        return this.hashes;
+    }
+
+    private static int bucket(int hash, int bucketCount) {
+        return Math.floorMod(mix(hash), bucketCount);
+    }
+
+    private static int slot(int hash, int seed, int slotCount) {
+        return Math.floorMod(mix(hash ^ (seed * 0x9E3779B9)), slotCount);
+    }
+
+    /**
+     * MurmurHash3 finalizer, the palette hashes are FNV-1a which mixes its last bytes poorly.
+     */
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        value ^= value >>> 16;
+        return value;
+    }
+
+    private static int size(IntArrayList list) {
+        return list == null ? 0 : list.size();
+    }
+}
@@ -0,0 +1,148 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.nbt.NbtMap;
+import org.cloudburstmc.proxypass.Configuration.PaletteVersion;
+import org.cloudburstmc.proxypass.network.bedrock.util.BlockPaletteUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ordered chain of block palettes, from the oldest supported client version to the server version.
+ * <p>
+ * Every hop only maps the block states of one palette onto the next one. The hops are composed when the chain is
+ * compiled, giving one direct table per client version, so translating for a client several versions behind the
+ * server is still a single array lookup.
+ */
+@Log4j2
+@Getter
+public class BlockPaletteChain {
+
+    private final List<PaletteVersion> versions;
+    private final BlockStateRules rules;
+
+    public BlockPaletteChain(List<PaletteVersion> versions, BlockStateRules rules) {
+        if (versions.size() < 2) {
+            throw new IllegalArgumentException("A palette chain needs at least a client and a server palette");
+        }
+        for (int i = 1; i < versions.size(); i++) {
+            if (versions.get(i).getProtocolVersion() <= versions.get(i - 1).getProtocolVersion()) {
+                throw new IllegalArgumentException("Palette chain is not ordered by protocol version: " + versions);
+            }
+        }
+        this.versions = List.copyOf(versions);
+        this.rules = rules;
+    }
+
+    /**
+     * @return the palette of the destination server, the last one of the chain
+     */
+    public PaletteVersion getServerVersion() {
+        return this.versions.get(this.versions.size() - 1);
+    }
+
+    /**
+     * @return the palettes clients can join with, oldest first
+     */
+    public List<PaletteVersion> getClientVersions() {
+        return this.versions.subList(0, this.versions.size() - 1);
+    }
+
+    /**
+     * Checksum of every palette the table of a client version is composed from, except the server palette.
+     */
+    public long clientChecksum(Path dataDir, PaletteVersion clientVersion) throws IOException {
+        long checksum = 0;
+        for (int i = this.versions.indexOf(clientVersion); i < this.versions.size() - 1; i++) {
+            checksum = TranslationTableFile.combine(checksum, TranslationTableFile.checksum(dataDir.resolve(this.versions.get(i).getPalette())));
+        }
+        return checksum;
+    }
+
+    /**
+     * Maps each hop of the chain and composes the hops into one table per client version.
+     * <p>
+     * The block state rules are applied to every palette. States still without an exact counterpart in the next
+     * palette of a hop are mapped to the closest state of the same block, so only states of blocks missing from the
+     * other palette fall through to the miss value. The coverage of the resulting tables is logged.
+     *
+     * @param paletteLoader loads the block states of a palette file
+     * @param missValue     server or client runtime ID to use for states missing from the other end of the chain
+     * @return direct translation table by client protocol version
+     */
+    public Int2ObjectMap<RuntimeIdTranslationTable> compile(Function<String, List<NbtMap>> paletteLoader, int missValue) {
+        List<BlockStateRule> rules = this.rules.getRules();
+        int[] ruleHits = new int[rules.size()];
+        List<List<NbtMap>> palettes = new ArrayList<>(this.versions.size());
+        List<int[]> paletteHashes = new ArrayList<>(this.versions.size());
+        List<Map<Integer, Integer>> paletteIndexes = new ArrayList<>(this.versions.size());
+        for (PaletteVersion version : this.versions) {
+            List<NbtMap> palette = paletteLoader.apply(version.getPalette());
+            int[] hashes = BlockPaletteUtils.createHashes(palette);
+            palettes.add(palette);
+            paletteHashes.add(hashes);
+            paletteIndexes.add(indexPalette(palette, hashes, rules, ruleHits));
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            log.info("Block state rule {} rewrote {} palette states: {}", i, ruleHits[i], rules.get(i));
+        }
+
+        Int2ObjectMap<RuntimeIdTranslationTable> tables = new Int2ObjectOpenHashMap<>();
+        RuntimeIdTranslationTable toServer = null;
+        BlockStateIndex newerIndex = new BlockStateIndex(palettes.get(this.versions.size() - 1));
+        for (int i = this.versions.size() - 2; i >= 0; i--) {
+            RuntimeIdTranslationTable hop = RuntimeIdTranslationTable.build(paletteIndexes.get(i + 1), paletteIndexes.get(i),
+                    paletteHashes.get(i + 1), paletteHashes.get(i), missValue);
+
+            BlockStateIndex olderIndex = new BlockStateIndex(palettes.get(i));
+            int approximatedOlder = newerIndex.fillUnmapped(hop.clientToServer(), palettes.get(i), rules);
+            int approximatedNewer = olderIndex.fillUnmapped(hop.serverToClient(), palettes.get(i + 1), rules);
+            log.info("Protocol {} to {}: approximated {} and {} states without an exact match",
+                    this.versions.get(i).getProtocolVersion(), this.versions.get(i + 1).getProtocolVersion(),
+                    approximatedOlder, approximatedNewer);
+            newerIndex = olderIndex;
+
+            toServer = toServer == null ? hop : RuntimeIdTranslationTable.compose(hop, toServer);
+            tables.put(this.versions.get(i).getProtocolVersion(), toServer);
+
+            log.info("Protocol {}: {} of {} server states and {} of {} client states fall through to runtime ID {}",
+                    this.versions.get(i).getProtocolVersion(),
+                    toServer.getUnmappedServerIds(), toServer.getServerPaletteSize(),
+                    toServer.getUnmappedClientIds(), toServer.getClientPaletteSize(), missValue);
+        }
+        return tables;
+    }
+
+    /**
+     * @param blockHashes block state hash of every runtime ID
+     * @param ruleHits    incremented for every state a rule rewrote
+     * @return block state hash to runtime ID, including the rewritten forms of the states
+     */
+    static Map<Integer, Integer> indexPalette(List<NbtMap> blockDefinitions, int[] blockHashes, List<BlockStateRule> rules, int[] ruleHits) {
+        Map<Integer, Integer> palette = new HashMap<>();
+        for (int i = 0; i < blockDefinitions.size(); i++) {
+            palette.put(blockHashes[i], i);
+        }
+
+        for (int i = 0; i < blockDefinitions.size(); i++) {
+            for (int rule = 0; rule < rules.size(); rule++) {
+                NbtMap rewritten = rules.get(rule).apply(blockDefinitions.get(i));
+                if (rewritten != null) {
+                    // Never shadow a state the palette really has. Multiple hashes linking to the same ID is fine
+                    palette.putIfAbsent(BlockPaletteUtils.createHash(rewritten), i);
+                    ruleHits[rule]++;
+                }
+            }
+        }
+        return palette;
+    }
+}
@@ -0,0 +1,118 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.cloudburstmc.nbt.NbtMap;
+import org.cloudburstmc.proxypass.network.bedrock.util.BlockPaletteUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of a block palette, from block name and state property value to runtime IDs.
+ * <p>
+ * Used while the translation tables are built to find the closest state of the same block for states which have no
+ * exact counterpart in the other palette, instead of letting them fall through to the miss value.
+ */
+final class BlockStateIndex {
+
+    /**
+     * Block name to runtime IDs, in palette order.
+     */
+    private final Map<String, IntList> blocks = new HashMap<>();
+    /**
+     * Block name to state property to value to runtime IDs.
+     */
+    private final Map<String, Map<String, Map<Object, IntList>>> traits = new HashMap<>();
+    private final int[] stateCounts;
+    private final int[] matches;
+
+    BlockStateIndex(List<NbtMap> palette) {
+        this.stateCounts = new int[palette.size()];
+        this.matches = new int[palette.size()];
+
+        for (int i = 0; i < palette.size(); i++) {
+            this.blocks.computeIfAbsent(palette.get(i).getString("name"), name -> new IntArrayList()).add(i);
+        }
+        BlockPaletteUtils.forEachTrait(palette, (index, trait, value) -> {
+            this.traits.computeIfAbsent(palette.get(index).getString("name"), name -> new HashMap<>())
+                    .computeIfAbsent(trait, key -> new HashMap<>())
+                    .computeIfAbsent(value, key -> new IntArrayList())
+                    .add(index);
+            this.stateCounts[index]++;
+        });
+    }
+
+    /**
+     * Finds the state of the same block sharing the most state property values with {@code blockState}.
+     * Ties go to the state with the fewest properties, then to the lowest runtime ID.
+     *
+     * @return runtime ID of the closest state, or {@link RuntimeIdTranslationTable#UNMAPPED} if the palette does not
+     * have the block at all
+     */
+    int nearest(NbtMap blockState) {
+        String name = blockState.getString("name");
+        IntList candidates = this.blocks.get(name);
+        if (candidates == null) {
+            return RuntimeIdTranslationTable.UNMAPPED;
+        }
+
+        Map<String, Map<Object, IntList>> blockTraits = this.traits.get(name);
+        if (blockTraits != null) {
+            for (Map.Entry<String, Object> state : blockState.getCompound("states").entrySet()) {
+                Map<Object, IntList> values = blockTraits.get(state.getKey());
+                IntList postings = values == null ? null : values.get(state.getValue());
+                if (postings != null) {
+                    for (int i = 0; i < postings.size(); i++) {
+                        this.matches[postings.getInt(i)]++;
+                    }
+                }
+            }
+        }
+
+        int best = RuntimeIdTranslationTable.UNMAPPED;
+        for (int i = 0; i < candidates.size(); i++) {
+            int runtimeId = candidates.getInt(i);
+            if (best == RuntimeIdTranslationTable.UNMAPPED || this.matches[runtimeId] > this.matches[best] ||
+                    (this.matches[runtimeId] == this.matches[best] && this.stateCounts[runtimeId] < this.stateCounts[best])) {
+                best = runtimeId;
+            }
+        }
+
+        // Only states of this block were counted
+        for (int i = 0; i < candidates.size(); i++) {
+            this.matches[candidates.getInt(i)] = 0;
+        }
+        return best;
+    }
+
+    /**
+     * Points every unmapped entry of {@code table} at the closest state in this palette.
+     * States of a block renamed by a rule are looked up under their new name.
+     *
+     * @param table   translation from {@code palette} into the palette of this index
+     * @param palette block states indexed by the runtime IDs of {@code table}
+     * @param rules   block state rules of the chain
+     * @return number of entries that were filled in
+     */
+    int fillUnmapped(int[] table, List<NbtMap> palette, List<BlockStateRule> rules) {
+        int filled = 0;
+        for (int runtimeId = 0; runtimeId < table.length && runtimeId < palette.size(); runtimeId++) {
+            if (table[runtimeId] == RuntimeIdTranslationTable.UNMAPPED) {
+                int nearest = this.nearest(palette.get(runtimeId));
+                for (int rule = 0; rule < rules.size() && nearest == RuntimeIdTranslationTable.UNMAPPED; rule++) {
+                    NbtMap rewritten = rules.get(rule).apply(palette.get(runtimeId));
+                    if (rewritten != null) {
+                        nearest = this.nearest(rewritten);
+                    }
+                }
+                if (nearest != RuntimeIdTranslationTable.UNMAPPED) {
+                    table[runtimeId] = nearest;
+                    filled++;
+                }
+            }
+        }
+        return filled;
+    }
+}
@@ -0,0 +1,93 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.ToString;
+import org.cloudburstmc.nbt.NbtMap;
+import org.cloudburstmc.nbt.NbtMapBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrite of the block states of some blocks, as declared in the block state rule file.
+ * <p>
+ * Rules are only applied while the translation tables are built: every palette state a rule applies to is also
+ * indexed under its rewritten form, so it matches that form in the other palettes of the chain.
+ */
+@Getter
+@ToString
+public class BlockStateRule {
+
+    private Set<String> blocks = Collections.emptySet();
+    @JsonProperty("rename-block")
+    private String renameBlock;
+    @JsonProperty("rename-state")
+    private StateRename renameState;
+    private Map<String, Object> values = Collections.emptyMap();
+    @JsonProperty("remove-states")
+    private List<String> removeStates = Collections.emptyList();
+    @JsonProperty("add-states")
+    private Map<String, Object> addStates = Collections.emptyMap();
+
+    /**
+     * @return the rewritten block state, or null if the rule does not apply to it
+     */
+    public NbtMap apply(NbtMap blockState) {
+        String name = blockState.getString("name");
+        if (!this.blocks.contains(name)) {
+            return null;
+        }
+
+        NbtMap states = blockState.getCompound("states");
+        NbtMapBuilder statesBuilder = states.toBuilder();
+        boolean changed = this.renameBlock != null && !this.renameBlock.equals(name);
+
+        if (this.renameState != null && states.containsKey(this.renameState.from)) {
+            Object value = statesBuilder.remove(this.renameState.from);
+            Object mappedValue = this.values.get(String.valueOf(value));
+            statesBuilder.put(this.renameState.to, mappedValue == null ? value : toTag(mappedValue));
+            changed = true;
+        }
+        for (String state : this.removeStates) {
+            if (statesBuilder.remove(state) != null) {
+                changed = true;
+            }
+        }
+        for (Map.Entry<String, Object> state : this.addStates.entrySet()) {
+            if (!statesBuilder.containsKey(state.getKey())) {
+                statesBuilder.put(state.getKey(), toTag(state.getValue()));
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return null;
+        }
+        NbtMapBuilder blockStateBuilder = blockState.toBuilder();
+        blockStateBuilder.putString("name", this.renameBlock == null ? name : this.renameBlock);
+        blockStateBuilder.putCompound("states", statesBuilder.build());
+        return blockStateBuilder.build();
+    }
+
+    /**
+     * Block states only contain bytes (for booleans), ints and strings.
+     */
+    private static Object toTag(Object value) {
+        if (value instanceof Boolean bool) {
+            return (byte) (bool ? 1 : 0);
+        } else if (value instanceof Number number) {
+            return number.intValue();
+        }
+        return String.valueOf(value);
+    }
+
+    @Getter
+    @ToString
+    public static class StateRename {
+        private String from;
+        private String to;
+    }
+}
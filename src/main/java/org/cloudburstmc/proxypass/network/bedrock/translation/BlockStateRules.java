@@ -0,0 +1,29 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.cloudburstmc.proxypass.ProxyPass;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The block state rule file, applied to every palette of the chain while the translation tables are built.
+ */
+@Getter
+@ToString
+public class BlockStateRules {
+
+    private List<BlockStateRule> rules = Collections.emptyList();
+
+    public static BlockStateRules load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            BlockStateRules rules = ProxyPass.YAML_MAPPER.readValue(reader, BlockStateRules.class);
+            return rules == null ? new BlockStateRules() : rules;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+import org.cloudburstmc.proxypass.Configuration.PaletteVersion;
+import org.cloudburstmc.proxypass.network.bedrock.util.UnknownBlockDefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Complete, immutable set of everything block translation is built from: the palette chain, the composed tables and
+ * the block definition registries.
+ * <p>
+ * A reload builds a new instance off the network threads and publishes it with a single reference swap, so packet
+ * handlers always see either the old or the new set, never a partially built one.
+ */
+@Getter
+public class BlockTranslation {
+
+    private final BlockPaletteChain paletteChain;
+    private final Int2ObjectMap<RuntimeIdTranslationTable> tables;
+    private final DefinitionRegistry<BlockDefinition> serverBlockDefinitions; // Block definitions FROM the server
+    private final DefinitionRegistry<BlockDefinition> clientBlockDefinitions; // Block definitions FROM the clients
+    // The same, keyed by hashed network IDs, for servers which enabled them
+    private final DefinitionRegistry<BlockDefinition> serverHashedBlockDefinitions;
+    private final DefinitionRegistry<BlockDefinition> clientHashedBlockDefinitions;
+    private final int newestClientProtocolVersion;
+
+    /**
+     * @param previous translation this one replaces on reload, whose canonical block definitions are reused, or null
+     */
+    public BlockTranslation(BlockPaletteChain paletteChain, Int2ObjectMap<RuntimeIdTranslationTable> tables,
+                            DefinitionRegistry<BlockDefinition> serverBlockDefinitions,
+                            DefinitionRegistry<BlockDefinition> clientBlockDefinitions, BlockTranslation previous) {
+        this.paletteChain = paletteChain;
+        this.tables = Int2ObjectMaps.unmodifiable(tables);
+        this.serverBlockDefinitions = serverBlockDefinitions;
+        this.clientBlockDefinitions = clientBlockDefinitions;
+        this.serverHashedBlockDefinitions = UnknownBlockDefinitionRegistry.hashed(hashIndex(tables, true),
+                previous == null ? null : (UnknownBlockDefinitionRegistry) previous.serverHashedBlockDefinitions);
+        this.clientHashedBlockDefinitions = UnknownBlockDefinitionRegistry.hashed(hashIndex(tables, false),
+                previous == null ? null : (UnknownBlockDefinitionRegistry) previous.clientHashedBlockDefinitions);
+
+        int newestClientProtocolVersion = 0;
+        for (PaletteVersion version : paletteChain.getClientVersions()) {
+            newestClientProtocolVersion = Math.max(newestClientProtocolVersion, version.getProtocolVersion());
+        }
+        this.newestClientProtocolVersion = newestClientProtocolVersion;
+    }
+
+    /**
+     * Indexes the hashed network IDs of every server or every client palette of the tables, so one registry serves
+     * all client versions.
+     */
+    private static BlockHashIndex hashIndex(Int2ObjectMap<RuntimeIdTranslationTable> tables, boolean server) {
+        IntLinkedOpenHashSet hashes = new IntLinkedOpenHashSet();
+        for (RuntimeIdTranslationTable table : tables.values()) {
+            for (int hash : server ? table.serverHashes() : table.clientHashes()) {
+                hashes.add(hash);
+            }
+        }
+        return new BlockHashIndex(hashes.toIntArray());
+    }
+
+    /**
+     * @return block translation table for clients using the given protocol version, or null if it is not supported
+     */
+    public RuntimeIdTranslationTable getTable(int protocolVersion) {
+        return this.tables.get(protocolVersion);
+    }
+
+    /**
+     * @return whether new clients of the given protocol version can join
+     */
+    public boolean isSupported(int protocolVersion) {
+        for (PaletteVersion version : this.paletteChain.getClientVersions()) {
+            if (version.getProtocolVersion() == protocolVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the tables of client versions the new chain dropped, so players already connected with them keep being
+     * translated. New clients of those versions are refused.
+     */
+    public BlockTranslation retainRemovedTables(BlockTranslation previous) {
+        Int2ObjectMap<RuntimeIdTranslationTable> tables = new Int2ObjectOpenHashMap<>(this.tables);
+        for (Int2ObjectMap.Entry<RuntimeIdTranslationTable> entry : previous.tables.int2ObjectEntrySet()) {
+            tables.putIfAbsent(entry.getIntKey(), entry.getValue());
+        }
+        return new BlockTranslation(this.paletteChain, tables, this.serverBlockDefinitions, this.clientBlockDefinitions, previous);
+    }
+
+    /**
+     * Describes how the tables changed compared to an older set, one line per client version.
+     */
+    public List<String> describeChanges(BlockTranslation previous) {
+        List<String> changes = new ArrayList<>();
+        for (Int2ObjectMap.Entry<RuntimeIdTranslationTable> entry : this.tables.int2ObjectEntrySet()) {
+            RuntimeIdTranslationTable table = entry.getValue();
+            RuntimeIdTranslationTable previousTable = previous.getTable(entry.getIntKey());
+            if (table == previousTable) {
+                continue; // Retained, reported below
+            } else if (previousTable == null) {
+                changes.add("Protocol " + entry.getIntKey() + ": added, " + table.getServerPaletteSize() + " server and " +
+                        table.getClientPaletteSize() + " client states");
+            } else {
+                changes.add("Protocol " + entry.getIntKey() + ": " +
+                        table.countChangedServerIds(previousTable) + " server and " +
+                        table.countChangedClientIds(previousTable) + " client runtime IDs translate differently, " +
+                        "server palette " + previousTable.getServerPaletteSize() + " -> " + table.getServerPaletteSize() + " states, " +
+                        "client palette " + previousTable.getClientPaletteSize() + " -> " + table.getClientPaletteSize() + " states");
+            }
+        }
+        for (Int2ObjectMap.Entry<RuntimeIdTranslationTable> entry : this.tables.int2ObjectEntrySet()) {
+            if (!this.isSupported(entry.getIntKey())) {
+                changes.add("Protocol " + entry.getIntKey() + ": removed, kept for connected players");
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,116 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Last contents of every container of a session, as received and as translated.
+ * <p>
+ * The server resends whole containers for small changes. Slots whose item did not change since the last
+ * InventoryContentPacket or InventorySlotPacket reuse the item translated back then, so only the changed slots go
+ * through the {@link ItemTranslator}. Everything is forgotten when the translation tables of the session change.
+ * <p>
+ * Not thread safe, used by the event loop of the downstream session.
+ */
+public final class InventoryShadow {
+
+    private final ItemTranslator translator;
+    private final Int2ObjectMap<Container> containers = new Int2ObjectOpenHashMap<>();
+    private RuntimeIdTranslationTable table;
+    private DefinitionRegistry<BlockDefinition> definitions;
+    private ItemIdTranslationTable itemTable;
+
+    public InventoryShadow(ItemTranslator translator) {
+        this.translator = translator;
+    }
+
+    /**
+     * Translates the contents of a container in place.
+     */
+    public void translateContents(int containerId, List<ItemData> contents, RuntimeIdTranslationTable table,
+                                  DefinitionRegistry<BlockDefinition> definitions, ItemIdTranslationTable itemTable) {
+        this.checkTables(table, definitions, itemTable);
+
+        Container container = this.containers.get(containerId);
+        if (container == null) {
+            container = new Container(contents.size());
+            this.containers.put(containerId, container);
+        }
+        container.ensureSize(contents.size());
+
+        for (int slot = 0; slot < contents.size(); slot++) {
+            ItemData item = contents.get(slot);
+            ItemData translated = container.translate(slot, item, this.translator, table, definitions, itemTable);
+            if (translated != item) {
+                contents.set(slot, translated);
+            }
+        }
+    }
+
+    /**
+     * @return the translated item of a single slot
+     */
+    public ItemData translateSlot(int containerId, int slot, ItemData item, RuntimeIdTranslationTable table,
+                                  DefinitionRegistry<BlockDefinition> definitions, ItemIdTranslationTable itemTable) {
+        this.checkTables(table, definitions, itemTable);
+
+        Container container = this.containers.get(containerId);
+        if (container == null || slot < 0) {
+            // Only containers the server sent in full are tracked
+            return this.translator.translate(item, table, definitions, itemTable);
+        }
+        container.ensureSize(slot + 1);
+        return container.translate(slot, item, this.translator, table, definitions, itemTable);
+    }
+
+    /**
+     * Forgets a container, e.g. once its window was closed.
+     */
+    public void remove(int containerId) {
+        this.containers.remove(containerId);
+    }
+
+    private void checkTables(RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                             ItemIdTranslationTable itemTable) {
+        if (this.table != table || this.definitions != definitions || this.itemTable != itemTable) {
+            this.containers.clear();
+            this.table = table;
+            this.definitions = definitions;
+            this.itemTable = itemTable;
+        }
+    }
+
+    private static final class Container {
+        private ItemData[] sources;
+        private ItemData[] translated;
+
+        Container(int size) {
+            this.sources = new ItemData[size];
+            this.translated = new ItemData[size];
+        }
+
+        void ensureSize(int size) {
+            if (this.sources.length < size) {
+                this.sources = Arrays.copyOf(this.sources, size);
+                this.translated = Arrays.copyOf(this.translated, size);
+            }
+        }
+
+        ItemData translate(int slot, ItemData item, ItemTranslator translator, RuntimeIdTranslationTable table,
+                           DefinitionRegistry<BlockDefinition> definitions, ItemIdTranslationTable itemTable) {
+            if (item != null && ItemTranslator.sameItem(this.sources[slot], item)) {
+                return this.translated[slot];
+            }
+            ItemData translated = translator.translate(item, table, definitions, itemTable);
+            this.sources[slot] = item;
+            this.translated[slot] = translated;
+            return translated;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
+
+/**
+ * Immutable, array-backed mapping of item runtime IDs between the item palette of the server and that of a client
+ * version, matched by identifier.
+ * <p>
+ * Item runtime IDs are negative for some block items, so both directions are dense {@code int[]} tables offset by
+ * the lowest runtime ID of their palette. Items the other palette does not have translate to the empty item (0).
+ */
+public final class ItemIdTranslationTable {
+
+    private static final int MISS_VALUE = 0;
+
+    /**
+     * Used until the server sent its items.
+     */
+    public static final ItemIdTranslationTable EMPTY = build(ItemPalette.EMPTY, null);
+
+    @Getter
+    private final ItemPalette serverPalette;
+    @Getter
+    private final ItemPalette clientPalette;
+    private final int[] serverToClient;
+    private final int serverOffset;
+    private final int[] clientToServer;
+    private final int clientOffset;
+    @Getter
+    private final boolean identity;
+
+    private ItemIdTranslationTable(ItemPalette serverPalette, ItemPalette clientPalette) {
+        this.serverPalette = serverPalette;
+        this.clientPalette = clientPalette;
+        this.serverOffset = offset(serverPalette);
+        this.clientOffset = offset(clientPalette);
+        this.serverToClient = map(serverPalette, this.serverOffset, clientPalette);
+        this.clientToServer = map(clientPalette, this.clientOffset, serverPalette);
+
+        boolean identity = this.serverOffset == this.clientOffset && this.serverToClient.length == this.clientToServer.length;
+        for (int i = 0; i < this.serverToClient.length && identity; i++) {
+            identity = this.serverToClient[i] == i - this.serverOffset && this.clientToServer[i] == i - this.clientOffset;
+        }
+        this.identity = identity;
+    }
+
+    /**
+     * @param serverPalette item definitions of the server
+     * @param clientPalette item definitions of the client version, or null if the client uses those of the server
+     */
+    public static ItemIdTranslationTable build(ItemPalette serverPalette, ItemPalette clientPalette) {
+        return new ItemIdTranslationTable(serverPalette, clientPalette == null ? serverPalette : clientPalette);
+    }
+
+    private static int offset(ItemPalette palette) {
+        int min = 0;
+        for (ItemDefinition definition : palette.getDefinitions()) {
+            min = Math.min(min, definition.getRuntimeId());
+        }
+        return -min;
+    }
+
+    private static int[] map(ItemPalette from, int offset, ItemPalette to) {
+        int max = 0;
+        for (ItemDefinition definition : from.getDefinitions()) {
+            max = Math.max(max, definition.getRuntimeId());
+        }
+
+        // Runtime IDs the palette does not list, e.g. the empty item, keep their value
+        int[] table = new int[offset + max + 1];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = i - offset;
+        }
+        for (ItemDefinition definition : from.getDefinitions()) {
+            ItemDefinition other = to.getByIdentifier().get(definition.getIdentifier());
+            table[definition.getRuntimeId() + offset] = other == null ? MISS_VALUE : other.getRuntimeId();
+        }
+        return table;
+    }
+
+    /**
+     * @return the client runtime ID of a server item, or the empty item
+     */
+    public int toClient(int serverRuntimeId) {
+        return lookup(this.serverToClient, this.serverOffset, serverRuntimeId);
+    }
+
+    /**
+     * @return the server runtime ID of a client item, or the empty item
+     */
+    public int toServer(int clientRuntimeId) {
+        return lookup(this.clientToServer, this.clientOffset, clientRuntimeId);
+    }
+
+    private static int lookup(int[] table, int offset, int runtimeId) {
+        int index = runtimeId + offset;
+        if (index < 0 || index >= table.length) {
+            return MISS_VALUE;
+        }
+        return table[index];
+    }
+
+    /**
+     * @return number of server items the client palette does not have
+     */
+    public int getUnmappedServerIds() {
+        return countUnmapped(this.serverPalette, this.clientPalette);
+    }
+
+    /**
+     * @return number of client items the server palette does not have
+     */
+    public int getUnmappedClientIds() {
+        return countUnmapped(this.clientPalette, this.serverPalette);
+    }
+
+    private static int countUnmapped(ItemPalette from, ItemPalette to) {
+        int unmapped = 0;
+        for (ItemDefinition definition : from.getDefinitions()) {
+            if (!to.getByIdentifier().containsKey(definition.getIdentifier())) {
+                unmapped++;
+            }
+        }
+        return unmapped;
+    }
+}
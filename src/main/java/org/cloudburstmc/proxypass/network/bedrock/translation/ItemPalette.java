@@ -0,0 +1,126 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMaps;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
+import org.cloudburstmc.protocol.bedrock.data.definitions.SimpleItemDefinition;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+import org.cloudburstmc.protocol.common.SimpleDefinitionRegistry;
+import org.cloudburstmc.proxypass.ProxyPass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable set of the item definitions of one game version, as sent in the StartGamePacket.
+ * <p>
+ * Instances are published whole and never modified, so they can be read from any event loop.
+ */
+@Getter
+public final class ItemPalette {
+
+    public static final ItemPalette EMPTY = ItemPalette.of(List.of());
+
+    private static final ItemDefinition EMPTY_ITEM = new SimpleItemDefinition("minecraft:empty", 0, false);
+
+    private final List<ItemDefinition> definitions;
+    private final DefinitionRegistry<ItemDefinition> registry;
+    private final Int2ObjectMap<ItemDefinition> byRuntimeId;
+    private final Object2ObjectMap<String, ItemDefinition> byIdentifier;
+
+    private ItemPalette(List<ItemDefinition> definitions) {
+        Int2ObjectMap<ItemDefinition> byRuntimeId = new Int2ObjectOpenHashMap<>(definitions.size());
+        Object2ObjectMap<String, ItemDefinition> byIdentifier = new Object2ObjectOpenHashMap<>(definitions.size());
+        for (ItemDefinition definition : definitions) {
+            byRuntimeId.putIfAbsent(definition.getRuntimeId(), definition);
+            byIdentifier.putIfAbsent(definition.getIdentifier(), definition);
+        }
+
+        this.definitions = List.copyOf(definitions);
+        this.byRuntimeId = Int2ObjectMaps.unmodifiable(byRuntimeId);
+        this.byIdentifier = Object2ObjectMaps.unmodifiable(byIdentifier);
+        this.registry = SimpleDefinitionRegistry.<ItemDefinition>builder()
+                .addAll(definitions)
+                .add(EMPTY_ITEM)
+                .build();
+    }
+
+    public static ItemPalette of(Collection<ItemDefinition> definitions) {
+        return new ItemPalette(new ArrayList<>(definitions));
+    }
+
+    /**
+     * Loads a palette from a {@code runtime_item_states.json} file, as dumped by the proxy.
+     * The file does not say which items are component based, see {@link #withComponentsOf}.
+     */
+    public static ItemPalette load(Path path) throws IOException {
+        List<RuntimeItemState> states;
+        try (InputStream stream = Files.newInputStream(path)) {
+            states = ProxyPass.JSON_MAPPER.readValue(stream, new TypeReference<>() {
+            });
+        }
+
+        List<ItemDefinition> definitions = new ArrayList<>(states.size());
+        for (RuntimeItemState state : states) {
+            definitions.add(new SimpleItemDefinition(state.name(), state.id(), false));
+        }
+        return new ItemPalette(definitions);
+    }
+
+    /**
+     * @return this palette, with the items {@code other} also has marked as component based where {@code other} does
+     */
+    public ItemPalette withComponentsOf(ItemPalette other) {
+        List<ItemDefinition> definitions = new ArrayList<>(this.definitions.size());
+        for (ItemDefinition definition : this.definitions) {
+            ItemDefinition otherDefinition = other.byIdentifier.get(definition.getIdentifier());
+            boolean componentBased = otherDefinition != null && otherDefinition.isComponentBased();
+            definitions.add(componentBased == definition.isComponentBased() ? definition :
+                    new SimpleItemDefinition(definition.getIdentifier(), definition.getRuntimeId(), componentBased));
+        }
+        return new ItemPalette(definitions);
+    }
+
+    /**
+     * @return whether {@code definitions} has the same items as this palette, under the same runtime IDs
+     */
+    public boolean sameItems(Collection<ItemDefinition> definitions) {
+        if (definitions.size() != this.definitions.size()) {
+            return false;
+        }
+        for (ItemDefinition definition : definitions) {
+            ItemDefinition own = this.byRuntimeId.get(definition.getRuntimeId());
+            if (own == null || !own.getIdentifier().equals(definition.getIdentifier()) ||
+                    own.isComponentBased() != definition.isComponentBased()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return identifier of the item with the given runtime ID, or null if the palette does not have it
+     */
+    public String getIdentifier(int runtimeId) {
+        ItemDefinition definition = this.byRuntimeId.get(runtimeId);
+        return definition == null ? null : definition.getIdentifier();
+    }
+
+    public boolean isEmpty() {
+        return this.definitions.isEmpty();
+    }
+
+    private record RuntimeItemState(String name, int id) {
+    }
+}
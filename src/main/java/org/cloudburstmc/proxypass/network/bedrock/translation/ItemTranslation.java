@@ -0,0 +1,63 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import lombok.Getter;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The item palette of the server together with the item palettes of the client versions, published as a whole.
+ * <p>
+ * The server palette is only known once the first StartGamePacket arrives. Every later StartGamePacket with the same
+ * items keeps the current instance, so the translation table of each client version is built once per server.
+ */
+public final class ItemTranslation {
+
+    public static final ItemTranslation EMPTY = new ItemTranslation(ItemPalette.EMPTY, Int2ObjectMaps.emptyMap());
+
+    @Getter
+    private final ItemPalette serverPalette;
+    /**
+     * Client protocol version to the items of that version, as loaded from the palette chain.
+     */
+    private final Int2ObjectMap<ItemPalette> clientPalettes;
+    private final Map<Integer, ItemIdTranslationTable> tables = new ConcurrentHashMap<>();
+
+    public ItemTranslation(ItemPalette serverPalette, Int2ObjectMap<ItemPalette> clientPalettes) {
+        this.serverPalette = serverPalette;
+        this.clientPalettes = Int2ObjectMaps.unmodifiable(clientPalettes);
+    }
+
+    /**
+     * @return this instance if the server still sends the same items, otherwise a new one for the new items
+     */
+    public ItemTranslation withServerItems(Collection<ItemDefinition> definitions) {
+        if (this.serverPalette.sameItems(definitions)) {
+            return this;
+        }
+        return new ItemTranslation(ItemPalette.of(definitions), this.clientPalettes);
+    }
+
+    /**
+     * @return a new instance with other client palettes, keeping the server palette
+     */
+    public ItemTranslation withClientPalettes(Int2ObjectMap<ItemPalette> clientPalettes) {
+        return new ItemTranslation(this.serverPalette, clientPalettes);
+    }
+
+    /**
+     * @return item translation table for clients using the given protocol version. Versions without their own item
+     * palette use the items of the server unchanged.
+     */
+    public ItemIdTranslationTable getTable(int protocolVersion) {
+        return this.tables.computeIfAbsent(protocolVersion, version -> {
+            ItemPalette clientPalette = this.clientPalettes.get((int) version);
+            return ItemIdTranslationTable.build(this.serverPalette,
+                    clientPalette == null ? null : clientPalette.withComponentsOf(this.serverPalette));
+        });
+    }
+}
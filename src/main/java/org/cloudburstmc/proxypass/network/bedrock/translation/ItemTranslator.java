@@ -0,0 +1,144 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
+import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+
+import java.util.Arrays;
+
+/**
+ * Translates the item and block definitions of {@link ItemData} in one direction, for one session.
+ * <p>
+ * Items whose item and block runtime IDs are the same on both sides are returned as-is.
+ * Translated items are kept in a small direct-mapped cache keyed by the item and block definition, damage, count,
+ * NBT identity and the remaining item fields, so an item moved around the inventory or hotbar is only rebuilt once.
+ * The cache forgets everything when the session switches to another translation table or registry.
+ * <p>
+ * Not thread safe, every instance is used by the event loop of its session.
+ */
+public final class ItemTranslator {
+
+    private final boolean toServer;
+    private final ItemData[] sources;
+    private final ItemData[] translated;
+    private final int mask;
+    private RuntimeIdTranslationTable table;
+    private DefinitionRegistry<BlockDefinition> definitions;
+    private ItemIdTranslationTable itemTable;
+
+    private ItemTranslator(boolean toServer, int cacheSize) {
+        int capacity = cacheSize <= 0 ? 0 : Integer.highestOneBit(Math.max(1, cacheSize - 1) << 1);
+        this.toServer = toServer;
+        this.sources = new ItemData[capacity];
+        this.translated = new ItemData[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param cacheSize number of translated items to keep, rounded up to a power of two. 0 disables the cache.
+     */
+    public static ItemTranslator toServer(int cacheSize) {
+        return new ItemTranslator(true, cacheSize);
+    }
+
+    /**
+     * @param cacheSize number of translated items to keep, rounded up to a power of two. 0 disables the cache.
+     */
+    public static ItemTranslator toClient(int cacheSize) {
+        return new ItemTranslator(false, cacheSize);
+    }
+
+    /**
+     * @param item        item to translate, may be null
+     * @param table       block translation table of the session
+     * @param definitions block definitions of the side the item is sent to
+     * @param itemTable   item translation table of the session
+     * @return the translated item, or {@code item} itself if nothing changes
+     */
+    public ItemData translate(ItemData item, RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                              ItemIdTranslationTable itemTable) {
+        if (item == null || item.getDefinition() == null) {
+            return item;
+        }
+
+        int itemId = item.getDefinition().getRuntimeId();
+        int translatedItemId = itemTable.isIdentity() ? itemId : this.toServer ? itemTable.toServer(itemId) : itemTable.toClient(itemId);
+        BlockDefinition blockDefinition = item.getBlockDefinition();
+        int blockId = blockDefinition == null ? 0 : blockDefinition.getRuntimeId();
+        int translatedBlockId = blockDefinition == null ? 0 : this.toServer ? table.toServer(blockId) : table.toClient(blockId);
+        if (translatedItemId == itemId && translatedBlockId == blockId) {
+            return item;
+        }
+
+        if (this.table != table || this.definitions != definitions || this.itemTable != itemTable) {
+            Arrays.fill(this.sources, null);
+            Arrays.fill(this.translated, null);
+            this.table = table;
+            this.definitions = definitions;
+            this.itemTable = itemTable;
+        }
+
+        int slot = hash(item) & this.mask;
+        if (this.sources.length > 0 && sameItem(this.sources[slot], item)) {
+            return this.translated[slot];
+        }
+
+        ItemData.Builder builder = item.toBuilder();
+        if (translatedItemId != itemId) {
+            ItemPalette palette = this.toServer ? itemTable.getServerPalette() : itemTable.getClientPalette();
+            ItemDefinition itemDefinition = palette.getRegistry().getDefinition(translatedItemId);
+            if (translatedItemId == 0 || itemDefinition == null) {
+                return ItemData.AIR; // The other side does not have this item
+            }
+            builder.definition(itemDefinition);
+        }
+        if (translatedBlockId != blockId) {
+            builder.blockDefinition(definitions.getDefinition(translatedBlockId));
+        }
+        ItemData result = builder.build();
+        if (this.sources.length > 0) {
+            this.sources[slot] = item;
+            this.translated[slot] = result;
+        }
+        return result;
+    }
+
+    private static int hash(ItemData item) {
+        int hash = System.identityHashCode(item.getDefinition());
+        hash = hash * 31 + (item.getBlockDefinition() == null ? 0 : item.getBlockDefinition().getRuntimeId());
+        hash = hash * 31 + item.getDamage();
+        hash = hash * 31 + item.getCount();
+        hash = hash * 31 + System.identityHashCode(item.getTag());
+        hash = hash * 31 + item.getNetId();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return whether both items are equal in every field the translation or the client can see, comparing the NBT by
+     * identity
+     */
+    static boolean sameItem(ItemData cached, ItemData item) {
+        if (cached == item) {
+            return true;
+        }
+        return cached != null &&
+                cached.getDefinition() == item.getDefinition() &&
+                sameBlock(cached.getBlockDefinition(), item.getBlockDefinition()) &&
+                cached.getDamage() == item.getDamage() &&
+                cached.getCount() == item.getCount() &&
+                cached.getTag() == item.getTag() &&
+                cached.getNetId() == item.getNetId() &&
+                cached.isUsingNetId() == item.isUsingNetId() &&
+                cached.getBlockingTicks() == item.getBlockingTicks() &&
+                Arrays.equals(cached.getCanPlace(), item.getCanPlace()) &&
+                Arrays.equals(cached.getCanBreak(), item.getCanBreak());
+    }
+
+    private static boolean sameBlock(BlockDefinition cached, BlockDefinition block) {
+        if (cached == null || block == null) {
+            return cached == block;
+        }
+        return cached.getRuntimeId() == block.getRuntimeId();
+    }
+}
@@ -0,0 +1,152 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.ContainerMixData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.PotionMixData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.recipe.RecipeData;
+import org.cloudburstmc.protocol.bedrock.packet.CraftingDataPacket;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Work done once per backend for the large packets every player receives while joining.
+ * <p>
+ * The {@link CraftingDataPacket} and the creative inventory are fingerprinted by their content. As long as the server
+ * keeps sending the same ones, they are only dumped once and the recipes and creative items are only translated once
+ * per set of translation tables, every later session reuses the translated ones. A new fingerprint replaces the
+ * cached entry.
+ */
+public final class LoginPacketCache {
+
+    private Recipes recipes;
+    private CreativeItems creativeItems;
+
+    /**
+     * @return the cached entry of the recipes of this packet, replacing the previous one if they differ from it
+     */
+    public Recipes getRecipes(CraftingDataPacket packet) {
+        RecipeLists lists = new RecipeLists(List.copyOf(packet.getCraftingData()), List.copyOf(packet.getPotionMixData()),
+                List.copyOf(packet.getContainerMixData()));
+        Fingerprint<RecipeLists> fingerprint = new Fingerprint<>(lists.hashCode(), lists);
+        synchronized (this) {
+            if (this.recipes == null || !fingerprint.matches(this.recipes.fingerprint)) {
+                this.recipes = new Recipes(fingerprint);
+            }
+            return this.recipes;
+        }
+    }
+
+    /**
+     * @return the cached entry of these creative items, replacing the previous one if they differ from it
+     */
+    public CreativeItems getCreativeItems(ItemData[] contents) {
+        Fingerprint<ItemData[]> fingerprint = new Fingerprint<>(Arrays.hashCode(contents), contents);
+        synchronized (this) {
+            if (this.creativeItems == null || !fingerprint.matches(this.creativeItems.fingerprint)) {
+                this.creativeItems = new CreativeItems(fingerprint);
+            }
+            return this.creativeItems;
+        }
+    }
+
+    private record Fingerprint<T>(int hash, T content) {
+
+        boolean matches(Fingerprint<T> other) {
+            if (other == null || other.hash != this.hash) {
+                return false;
+            }
+            if (this.content instanceof Object[] array) {
+                return Arrays.equals(array, (Object[]) other.content);
+            }
+            return this.content.equals(other.content);
+        }
+    }
+
+    /**
+     * Compared by identity of the tables, which are replaced as a whole whenever they change.
+     */
+    private record TranslationKey(RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                                  ItemIdTranslationTable itemTable) {
+    }
+
+    /**
+     * The parts of a {@link CraftingDataPacket} which refer to items, copied so translating the packet does not change
+     * the fingerprint.
+     */
+    public record RecipeLists(List<RecipeData> craftingData, List<PotionMixData> potionMixData,
+                              List<ContainerMixData> containerMixData) {
+    }
+
+    public static final class Recipes {
+        private final Fingerprint<RecipeLists> fingerprint;
+        private final AtomicBoolean dumped = new AtomicBoolean();
+        private final Map<TranslationKey, RecipeLists> translated = new ConcurrentHashMap<>();
+
+        private Recipes(Fingerprint<RecipeLists> fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return true the first time it is called, when the recipes still need to be dumped
+         */
+        public boolean markDumped() {
+            return this.dumped.compareAndSet(false, true);
+        }
+
+        /**
+         * Translates the recipes for a session, reusing the result of an earlier session with the same tables.
+         * The returned lists are shared and must not be modified.
+         */
+        public RecipeLists translate(RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                                     ItemIdTranslationTable itemTable) {
+            return this.translated.computeIfAbsent(new TranslationKey(table, definitions, itemTable), key -> {
+                RecipeTranslator translator = new RecipeTranslator(table, definitions, itemTable);
+                RecipeLists source = this.fingerprint.content();
+                return new RecipeLists(translator.translateRecipes(source.craftingData()),
+                        translator.translatePotionMixes(source.potionMixData()),
+                        translator.translateContainerMixes(source.containerMixData()));
+            });
+        }
+    }
+
+    public static final class CreativeItems {
+        private final Fingerprint<ItemData[]> fingerprint;
+        private final ItemData[] contents;
+        private final AtomicBoolean dumped = new AtomicBoolean();
+        private final Map<TranslationKey, ItemData[]> translated = new ConcurrentHashMap<>();
+
+        private CreativeItems(Fingerprint<ItemData[]> fingerprint) {
+            this.fingerprint = fingerprint;
+            this.contents = fingerprint.content();
+        }
+
+        /**
+         * @return true the first time it is called, when the items still need to be dumped
+         */
+        public boolean markDumped() {
+            return this.dumped.compareAndSet(false, true);
+        }
+
+        /**
+         * Translates the items for a session, reusing the result of an earlier session with the same tables.
+         * The returned array is shared and must not be modified.
+         */
+        public ItemData[] translate(RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                                    ItemIdTranslationTable itemTable) {
+            return this.translated.computeIfAbsent(new TranslationKey(table, definitions, itemTable), key -> {
+                ItemTranslator translator = ItemTranslator.toClient(0);
+                ItemData[] translated = new ItemData[this.contents.length];
+                for (int i = 0; i < translated.length; i++) {
+                    translated[i] = translator.translate(this.contents[i], table, definitions, itemTable);
+                }
+                return translated;
+            });
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
+import org.cloudburstmc.protocol.bedrock.data.definitions.ItemDefinition;
+import org.cloudburstmc.protocol.bedrock.data.inventory.ItemData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.ContainerMixData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.PotionMixData;
+import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.recipe.*;
+import org.cloudburstmc.protocol.bedrock.data.inventory.descriptor.DefaultDescriptor;
+import org.cloudburstmc.protocol.bedrock.data.inventory.descriptor.ItemDescriptorWithCount;
+import org.cloudburstmc.protocol.common.DefinitionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates the recipes sent by the server to the item and block IDs of a client version.
+ * <p>
+ * Recipes refer to items by runtime ID in their results, their default descriptors and the inputs of furnace, potion
+ * and container mixes. Tag, molang and deferred descriptors name items by identifier and are kept as they are, as are
+ * recipes without items like multi recipes and smithing trims, whose inputs are item tags. A recipe using an item the
+ * client does not have is left out, replacing that item by air would turn it into a different recipe.
+ * <p>
+ * The source recipes are never modified, translated recipes are new instances which share everything unchanged.
+ */
+public final class RecipeTranslator {
+
+    private final ItemTranslator items = ItemTranslator.toClient(0);
+    private final RuntimeIdTranslationTable table;
+    private final DefinitionRegistry<BlockDefinition> definitions;
+    private final ItemIdTranslationTable itemTable;
+
+    /**
+     * @param table       block translation table of the client version
+     * @param definitions block definitions of the client
+     * @param itemTable   item translation table of the client version
+     */
+    public RecipeTranslator(RuntimeIdTranslationTable table, DefinitionRegistry<BlockDefinition> definitions,
+                            ItemIdTranslationTable itemTable) {
+        this.table = table;
+        this.definitions = definitions;
+        this.itemTable = itemTable;
+    }
+
+    public List<RecipeData> translateRecipes(List<RecipeData> recipes) {
+        List<RecipeData> translated = new ArrayList<>(recipes.size());
+        for (RecipeData recipe : recipes) {
+            RecipeData result = this.translate(recipe);
+            if (result != null) {
+                translated.add(result);
+            }
+        }
+        return translated;
+    }
+
+    public List<PotionMixData> translatePotionMixes(List<PotionMixData> potionMixes) {
+        List<PotionMixData> translated = new ArrayList<>(potionMixes.size());
+        for (PotionMixData potion : potionMixes) {
+            int inputId = this.translateId(potion.getInputId());
+            int reagentId = this.translateId(potion.getReagentId());
+            int outputId = this.translateId(potion.getOutputId());
+            if (inputId != 0 && reagentId != 0 && outputId != 0) {
+                translated.add(new PotionMixData(inputId, potion.getInputMeta(), reagentId, potion.getReagentMeta(),
+                        outputId, potion.getOutputMeta()));
+            }
+        }
+        return translated;
+    }
+
+    public List<ContainerMixData> translateContainerMixes(List<ContainerMixData> containerMixes) {
+        List<ContainerMixData> translated = new ArrayList<>(containerMixes.size());
+        for (ContainerMixData container : containerMixes) {
+            int inputId = this.translateId(container.getInputId());
+            int reagentId = this.translateId(container.getReagentId());
+            int outputId = this.translateId(container.getOutputId());
+            if (inputId != 0 && reagentId != 0 && outputId != 0) {
+                translated.add(new ContainerMixData(inputId, reagentId, outputId));
+            }
+        }
+        return translated;
+    }
+
+    /**
+     * @return the translated recipe, or null if the client does not have one of its items
+     */
+    private RecipeData translate(RecipeData recipe) {
+        if (recipe instanceof ShapedRecipeData shaped) {
+            List<ItemDescriptorWithCount> ingredients = this.translateIngredients(shaped.getIngredients());
+            List<ItemData> results = this.translateItems(shaped.getResults());
+            if (ingredients == null || results == null) {
+                return null;
+            }
+            return ShapedRecipeData.of(shaped.getType(), shaped.getId(), shaped.getWidth(), shaped.getHeight(),
+                    ingredients, results, shaped.getUuid(), shaped.getTag(), shaped.getPriority(), shaped.getNetId());
+        } else if (recipe instanceof ShapelessRecipeData shapeless) {
+            List<ItemDescriptorWithCount> ingredients = this.translateIngredients(shapeless.getIngredients());
+            List<ItemData> results = this.translateItems(shapeless.getResults());
+            if (ingredients == null || results == null) {
+                return null;
+            }
+            return ShapelessRecipeData.of(shapeless.getType(), shapeless.getId(), ingredients, results,
+                    shapeless.getUuid(), shapeless.getTag(), shapeless.getPriority(), shapeless.getNetId());
+        } else if (recipe instanceof FurnaceRecipeData furnace) {
+            int inputId = this.translateId(furnace.getInputId());
+            ItemData result = this.translateItem(furnace.getResult());
+            if (inputId == 0 || result == null) {
+                return null;
+            }
+            return FurnaceRecipeData.of(furnace.getType(), inputId, furnace.getInputData(), result, furnace.getTag());
+        } else if (recipe instanceof SmithingTransformRecipeData smithing) {
+            ItemDescriptorWithCount template = this.translateIngredient(smithing.getTemplate());
+            ItemDescriptorWithCount base = this.translateIngredient(smithing.getBase());
+            ItemDescriptorWithCount addition = this.translateIngredient(smithing.getAddition());
+            ItemData result = this.translateItem(smithing.getResult());
+            if (template == null || base == null || addition == null || result == null) {
+                return null;
+            }
+            return SmithingTransformRecipeData.of(smithing.getId(), template, base, addition, result,
+                    smithing.getTag(), smithing.getNetId());
+        }
+        return recipe;
+    }
+
+    private List<ItemDescriptorWithCount> translateIngredients(List<ItemDescriptorWithCount> ingredients) {
+        List<ItemDescriptorWithCount> translated = new ArrayList<>(ingredients.size());
+        for (ItemDescriptorWithCount ingredient : ingredients) {
+            ItemDescriptorWithCount result = this.translateIngredient(ingredient);
+            if (result == null) {
+                return null;
+            }
+            translated.add(result);
+        }
+        return translated;
+    }
+
+    private ItemDescriptorWithCount translateIngredient(ItemDescriptorWithCount ingredient) {
+        if (ingredient == null || !(ingredient.getDescriptor() instanceof DefaultDescriptor descriptor)
+                || descriptor.getItemId() == null || descriptor.getItemId().getRuntimeId() == 0) {
+            return ingredient;
+        }
+        int itemId = descriptor.getItemId().getRuntimeId();
+        int translatedId = this.translateId(itemId);
+        if (translatedId == itemId) {
+            return ingredient;
+        }
+        ItemDefinition definition = translatedId == 0 ? null : this.itemTable.getClientPalette().getRegistry().getDefinition(translatedId);
+        if (definition == null) {
+            return null;
+        }
+        return new ItemDescriptorWithCount(new DefaultDescriptor(definition, descriptor.getAuxValue()), ingredient.getCount());
+    }
+
+    private List<ItemData> translateItems(List<ItemData> items) {
+        List<ItemData> translated = new ArrayList<>(items.size());
+        for (ItemData item : items) {
+            ItemData result = this.translateItem(item);
+            if (result == null) {
+                return null;
+            }
+            translated.add(result);
+        }
+        return translated;
+    }
+
+    private ItemData translateItem(ItemData item) {
+        ItemData translated = this.items.translate(item, this.table, this.definitions, this.itemTable);
+        if (translated == ItemData.AIR && item != ItemData.AIR) {
+            return null; // The client does not have this item
+        }
+        return translated;
+    }
+
+    /**
+     * @return the client runtime ID of a server item, 0 if the client does not have it
+     */
+    private int translateId(int itemId) {
+        return this.itemTable.isIdentity() || itemId == 0 ? itemId : this.itemTable.toClient(itemId);
+    }
+}
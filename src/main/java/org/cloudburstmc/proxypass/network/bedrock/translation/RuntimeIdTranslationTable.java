@@ -0,0 +1,251 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable, array-backed mapping of block runtime IDs between the server and the client palette.
+ * <p>
+ * Both directions are dense {@code int[]} tables indexed by runtime ID, so a lookup is a bounds check and a single
+ * array read. IDs which have no counterpart in the other palette (or are out of range) translate to the miss value.
+ * <p>
+ * Tables between adjacent palette versions can be {@link #compose composed}, so a client several versions behind the
+ * server still translates with a single lookup.
+ * <p>
+ * The table also knows the hashed network ID of every runtime ID of both palettes. Sessions using hashed block network
+ * IDs translate through {@link #getHashed()}, which maps hashes to runtime IDs with a {@link BlockHashIndex}.
+ */
+public final class RuntimeIdTranslationTable {
+
+    /**
+     * Stored for IDs without a counterpart, so they stay distinguishable from a real mapping to the miss value.
+     */
+    static final int UNMAPPED = -1;
+
+    private final int[] serverToClient;
+    private final int[] clientToServer;
+    private final int[] serverHashes;
+    private final int[] clientHashes;
+    private final int missValue;
+    /**
+     * Set on the view created by {@link #getHashed()}.
+     */
+    private final BlockHashIndex serverHashIndex;
+    private final BlockHashIndex clientHashIndex;
+    private volatile RuntimeIdTranslationTable hashed;
+
+    private RuntimeIdTranslationTable(int[] serverToClient, int[] clientToServer, int[] serverHashes, int[] clientHashes,
+                                      int missValue) {
+        this(serverToClient, clientToServer, serverHashes, clientHashes, missValue, null, null);
+    }
+
+    private RuntimeIdTranslationTable(int[] serverToClient, int[] clientToServer, int[] serverHashes, int[] clientHashes,
+                                      int missValue, BlockHashIndex serverHashIndex, BlockHashIndex clientHashIndex) {
+        this.serverToClient = serverToClient;
+        this.clientToServer = clientToServer;
+        this.serverHashes = serverHashes;
+        this.clientHashes = clientHashes;
+        this.missValue = missValue;
+        this.serverHashIndex = serverHashIndex;
+        this.clientHashIndex = clientHashIndex;
+        if (serverHashIndex != null) {
+            this.hashed = this;
+        }
+    }
+
+    /**
+     * Builds the table from the block state hash to runtime ID maps of both palettes.
+     *
+     * @param serverPalette block state hash to server runtime ID
+     * @param clientPalette block state hash to client runtime ID
+     * @param serverHashes  block state hash of every server runtime ID
+     * @param clientHashes  block state hash of every client runtime ID
+     * @param missValue     runtime ID to use for states missing from the other palette
+     */
+    public static RuntimeIdTranslationTable build(Map<Integer, Integer> serverPalette, Map<Integer, Integer> clientPalette,
+                                                  int[] serverHashes, int[] clientHashes, int missValue) {
+        int[] serverToClient = newTable(serverHashes.length);
+        int[] clientToServer = newTable(clientHashes.length);
+
+        // A runtime ID can be listed under several hashes, the first one matching the other palette wins
+        for (Map.Entry<Integer, Integer> blockEntry : serverPalette.entrySet()) {
+            Integer clientRuntimeId = clientPalette.get(blockEntry.getKey());
+            if (clientRuntimeId != null && serverToClient[blockEntry.getValue()] == UNMAPPED) {
+                serverToClient[blockEntry.getValue()] = clientRuntimeId;
+            }
+        }
+        for (Map.Entry<Integer, Integer> blockEntry : clientPalette.entrySet()) {
+            Integer serverRuntimeId = serverPalette.get(blockEntry.getKey());
+            if (serverRuntimeId != null && clientToServer[blockEntry.getValue()] == UNMAPPED) {
+                clientToServer[blockEntry.getValue()] = serverRuntimeId;
+            }
+        }
+        return new RuntimeIdTranslationTable(serverToClient, clientToServer, serverHashes, clientHashes, missValue);
+    }
+
+    /**
+     * Composes two adjacent hops of a palette chain into one direct table.
+     * An ID missing from any palette along the way stays unmapped.
+     *
+     * @param older table from the oldest palette (client) to the intermediate palette (server)
+     * @param newer table from the intermediate palette (client) to the newest palette (server)
+     * @return table from the oldest palette (client) to the newest palette (server), using the miss value of {@code newer}
+     */
+    public static RuntimeIdTranslationTable compose(RuntimeIdTranslationTable older, RuntimeIdTranslationTable newer) {
+        int[] clientToServer = new int[older.clientToServer.length];
+        for (int runtimeId = 0; runtimeId < clientToServer.length; runtimeId++) {
+            clientToServer[runtimeId] = follow(newer.clientToServer, older.clientToServer[runtimeId]);
+        }
+
+        int[] serverToClient = new int[newer.serverToClient.length];
+        for (int runtimeId = 0; runtimeId < serverToClient.length; runtimeId++) {
+            serverToClient[runtimeId] = follow(older.serverToClient, newer.serverToClient[runtimeId]);
+        }
+        return new RuntimeIdTranslationTable(serverToClient, clientToServer, newer.serverHashes, older.clientHashes, newer.missValue);
+    }
+
+    private static int follow(int[] table, int runtimeId) {
+        if (runtimeId < 0 || runtimeId >= table.length) {
+            return UNMAPPED;
+        }
+        return table[runtimeId];
+    }
+
+    /**
+     * Wraps precomputed tables without copying them.
+     */
+    static RuntimeIdTranslationTable of(int[] serverToClient, int[] clientToServer, int[] serverHashes, int[] clientHashes,
+                                        int missValue) {
+        return new RuntimeIdTranslationTable(serverToClient, clientToServer, serverHashes, clientHashes, missValue);
+    }
+
+    private static int[] newTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, UNMAPPED);
+        return table;
+    }
+
+    /**
+     * Returns the view of this table for sessions using hashed block network IDs on both sides.
+     * Its lookups take and return hashed IDs; the perfect hashes are built on first use.
+     */
+    public RuntimeIdTranslationTable getHashed() {
+        RuntimeIdTranslationTable hashed = this.hashed;
+        if (hashed == null) {
+            synchronized (this) {
+                if ((hashed = this.hashed) == null) {
+                    this.hashed = hashed = new RuntimeIdTranslationTable(this.serverToClient, this.clientToServer,
+                            this.serverHashes, this.clientHashes, this.missValue,
+                            new BlockHashIndex(this.serverHashes), new BlockHashIndex(this.clientHashes));
+                }
+            }
+        }
+        return hashed;
+    }
+
+    /**
+     * @return the client runtime ID for a server runtime ID, or the miss value
+     */
+    public int toClient(int serverRuntimeId) {
+        if (this.serverHashIndex == null) {
+            return lookup(this.serverToClient, serverRuntimeId);
+        }
+        return this.clientHashIndex.hashOf(lookup(this.serverToClient, this.serverHashIndex.indexOf(serverRuntimeId)));
+    }
+
+    /**
+     * @return the server runtime ID for a client runtime ID, or the miss value
+     */
+    public int toServer(int clientRuntimeId) {
+        if (this.clientHashIndex == null) {
+            return lookup(this.clientToServer, clientRuntimeId);
+        }
+        return this.serverHashIndex.hashOf(lookup(this.clientToServer, this.clientHashIndex.indexOf(clientRuntimeId)));
+    }
+
+    private int lookup(int[] table, int runtimeId) {
+        if (runtimeId < 0 || runtimeId >= table.length) {
+            return this.missValue;
+        }
+        int mapped = table[runtimeId];
+        return mapped == UNMAPPED ? this.missValue : mapped;
+    }
+
+    int[] serverToClient() {
+        return serverToClient;
+    }
+
+    int[] clientToServer() {
+        return clientToServer;
+    }
+
+    int[] serverHashes() {
+        return serverHashes;
+    }
+
+    int[] clientHashes() {
+        return clientHashes;
+    }
+
+    public int getMissValue() {
+        return missValue;
+    }
+
+    public int getServerPaletteSize() {
+        return serverToClient.length;
+    }
+
+    public int getClientPaletteSize() {
+        return clientToServer.length;
+    }
+
+    /**
+     * @return number of server runtime IDs which translate to the miss value
+     */
+    public int getUnmappedServerIds() {
+        return countUnmapped(serverToClient);
+    }
+
+    /**
+     * @return number of client runtime IDs which translate to the miss value
+     */
+    public int getUnmappedClientIds() {
+        return countUnmapped(clientToServer);
+    }
+
+    /**
+     * @return number of server runtime IDs which translate differently in {@code other}, including IDs only one of the
+     * tables knows about
+     */
+    public int countChangedServerIds(RuntimeIdTranslationTable other) {
+        return countChanged(this.serverToClient, other.serverToClient);
+    }
+
+    /**
+     * @return number of client runtime IDs which translate differently in {@code other}, including IDs only one of the
+     * tables knows about
+     */
+    public int countChangedClientIds(RuntimeIdTranslationTable other) {
+        return countChanged(this.clientToServer, other.clientToServer);
+    }
+
+    private static int countChanged(int[] table, int[] other) {
+        int changed = Math.abs(table.length - other.length);
+        for (int runtimeId = 0, length = Math.min(table.length, other.length); runtimeId < length; runtimeId++) {
+            if (table[runtimeId] != other[runtimeId]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static int countUnmapped(int[] table) {
+        int unmapped = 0;
+        for (int runtimeId : table) {
+            if (runtimeId == UNMAPPED) {
+                unmapped++;
+            }
+        }
+        return unmapped;
+    }
+}
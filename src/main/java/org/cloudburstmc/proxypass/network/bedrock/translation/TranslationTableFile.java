@@ -0,0 +1,142 @@
+package org.cloudburstmc.proxypass.network.bedrock.translation;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Precompiled, versioned binary form of a {@link RuntimeIdTranslationTable}.
+ * <p>
+ * The file is keyed by the checksums of the palette files it was built from, so a stale table is detected and
+ * rebuilt instead of being used. Loading it is a bulk read of four int arrays instead of parsing and matching both
+ * palettes. The arrays are copied onto the heap rather than used from the file, so lookups stay plain array reads.
+ * Layout (little endian):
+ * <pre>
+ * int  magic
+ * int  format version
+ * long server palette checksum
+ * long client palette checksum, combined over every older palette of the chain
+ * int  miss value
+ * int  server palette size
+ * int  client palette size
+ * int[server palette size] server to client
+ * int[client palette size] client to server
+ * int[server palette size] server block state hashes
+ * int[client palette size] client block state hashes
+ * </pre>
+ */
+@Log4j2
+@UtilityClass
+public class TranslationTableFile {
+
+    private static final int MAGIC = 0x56505454; // VPTT
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2 + Integer.BYTES * 3;
+
+    /**
+     * Checksum of a palette file, combined with its length.
+     */
+    public static long checksum(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[8192];
+        long length = 0;
+        try (InputStream stream = Files.newInputStream(path)) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                length += read;
+            }
+        }
+        return (length << 32) | crc.getValue();
+    }
+
+    /**
+     * Folds the checksum of another palette file into a running checksum, for tables built from several palettes.
+     */
+    public static long combine(long checksum, long paletteChecksum) {
+        return checksum * 0x9E3779B97F4A7C15L + paletteChecksum;
+    }
+
+    /**
+     * Reads a precompiled table, copying its tables into arrays.
+     *
+     * @return the table, or null if the file is missing, corrupt or was built from other palettes
+     */
+    public static RuntimeIdTranslationTable read(Path path, long serverChecksum, long clientChecksum) {
+        if (Files.notExists(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+                log.info("Ignoring translation table {} from another format version", path);
+                return null;
+            }
+            if (mapped.getLong() != serverChecksum || mapped.getLong() != clientChecksum) {
+                log.info("Block palettes changed since {} was compiled", path);
+                return null;
+            }
+
+            int missValue = mapped.getInt();
+            int serverSize = mapped.getInt();
+            int clientSize = mapped.getInt();
+            if (serverSize < 0 || clientSize < 0 || mapped.remaining() != (long) (serverSize + clientSize) * 2 * Integer.BYTES) {
+                log.warn("Translation table {} is corrupt", path);
+                return null;
+            }
+
+            IntBuffer ints = mapped.asIntBuffer();
+            int[] serverToClient = new int[serverSize];
+            int[] clientToServer = new int[clientSize];
+            int[] serverHashes = new int[serverSize];
+            int[] clientHashes = new int[clientSize];
+            ints.get(serverToClient);
+            ints.get(clientToServer);
+            ints.get(serverHashes);
+            ints.get(clientHashes);
+            return RuntimeIdTranslationTable.of(serverToClient, clientToServer, serverHashes, clientHashes, missValue);
+        } catch (IOException e) {
+            log.warn("Unable to read translation table {}", path, e);
+            return null;
+        }
+    }
+
+    public static void write(Path path, RuntimeIdTranslationTable table, long serverChecksum, long clientChecksum) throws IOException {
+        int[] serverToClient = table.serverToClient();
+        int[] clientToServer = table.clientToServer();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (serverToClient.length + clientToServer.length) * 2 * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(serverChecksum);
+        buffer.putLong(clientChecksum);
+        buffer.putInt(table.getMissValue());
+        buffer.putInt(serverToClient.length);
+        buffer.putInt(clientToServer.length);
+        buffer.asIntBuffer().put(serverToClient).put(clientToServer).put(table.serverHashes()).put(table.clientHashes());
+
+        // Write next to the target and move it over, so a crash never leaves a truncated table behind
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -8,6 +8,7 @@ import org.cloudburstmc.proxypass.ProxyPass;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class BlockPaletteUtils {
 
@@ -38,28 +39,109 @@ public class BlockPaletteUtils {
         // Get all block states
         Map<String, Set<Object>> blockTraits = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
+        List<NbtMap> blocks = new ArrayList<>(tags.size());
         for (NbtMap tag : tags) {
-            NbtMap map = tag.getCompound("block").getCompound("states");
-            map.forEach((trait, value) -> {
-                blockTraits.computeIfAbsent(trait, s -> new HashSet<>())
-                        .add(value);
-            });
+            blocks.add(tag.getCompound("block"));
         }
+        forEachTrait(blocks, (index, trait, value) -> {
+            blockTraits.computeIfAbsent(trait, s -> new HashSet<>())
+                    .add(value);
+        });
 
         proxy.saveJson("block_traits.json", blockTraits);
     }
 
+    /**
+     * Walks every state property (trait) of every block state in a palette.
+     */
+    public static void forEachTrait(List<NbtMap> blocks, TraitConsumer consumer) {
+        for (int i = 0; i < blocks.size(); i++) {
+            int index = i;
+            NbtMap map = blocks.get(i).getCompound("states");
+            map.forEach((trait, value) -> consumer.accept(index, trait, value));
+        }
+    }
+
+    /**
+     * Computes the hashed network ID of a block state: FNV-1a over the little endian NBT encoding of its name and its
+     * states sorted by key.
+     * <p>
+     * The encoding is fed straight into the hash without building the sorted tag or serializing it, so this is cheap
+     * enough to use at runtime. States of a type the streaming encoder does not know fall back to serializing the tag.
+     */
     public static int createHash(NbtMap block) {
-        if (block.getString("name").equals("minecraft:unknown")) {
+        String name = block.getString("name");
+        if (name.equals("minecraft:unknown")) {
             return -2; // This is special case
         }
+        NbtMap states = block.getCompound("states");
+
+        int hash = FNV1_32_INIT;
+        hash = fnv1a_32(hash, NbtType.COMPOUND.getId());
+        hash = fnv1a_32_utf(hash, ""); // Root tag name
+
+        hash = fnv1a_32(hash, NbtType.STRING.getId());
+        hash = fnv1a_32_utf(hash, "name");
+        hash = fnv1a_32_utf(hash, name);
+
+        hash = fnv1a_32(hash, NbtType.COMPOUND.getId());
+        hash = fnv1a_32_utf(hash, "states");
+
+        // Order required, walk the keys in sorted order without copying them
+        String previous = null;
+        for (int i = 0; i < states.size(); i++) {
+            String next = null;
+            for (String key : states.keySet()) {
+                if ((previous == null || key.compareTo(previous) > 0) && (next == null || key.compareTo(next) < 0)) {
+                    next = key;
+                }
+            }
+
+            Object value = states.get(next);
+            if (value instanceof Byte byteValue) {
+                hash = fnv1a_32(hash, NbtType.BYTE.getId());
+                hash = fnv1a_32_utf(hash, next);
+                hash = fnv1a_32(hash, byteValue);
+            } else if (value instanceof Short shortValue) {
+                hash = fnv1a_32(hash, NbtType.SHORT.getId());
+                hash = fnv1a_32_utf(hash, next);
+                hash = fnv1a_32_le(hash, shortValue, Short.BYTES);
+            } else if (value instanceof Integer intValue) {
+                hash = fnv1a_32(hash, NbtType.INT.getId());
+                hash = fnv1a_32_utf(hash, next);
+                hash = fnv1a_32_le(hash, intValue, Integer.BYTES);
+            } else if (value instanceof String stringValue) {
+                hash = fnv1a_32(hash, NbtType.STRING.getId());
+                hash = fnv1a_32_utf(hash, next);
+                hash = fnv1a_32_utf(hash, stringValue);
+            } else {
+                return createSerializedHash(name, states);
+            }
+            previous = next;
+        }
+
+        hash = fnv1a_32(hash, NbtType.END.getId()); // End of states
+        return fnv1a_32(hash, NbtType.END.getId()); // End of root
+    }
+
+    /**
+     * Hashes every block state of a palette, splitting the work over the common fork/join pool.
+     *
+     * @return hashes indexed like the palette
+     */
+    public static int[] createHashes(List<NbtMap> palette) {
+        int[] hashes = new int[palette.size()];
+        IntStream.range(0, hashes.length).parallel().forEach(i -> hashes[i] = createHash(palette.get(i)));
+        return hashes;
+    }
+
+    private static int createSerializedHash(String name, NbtMap states) {
         // Order required
-        TreeMap<String, Object> states = new TreeMap<>(block.getCompound("states"));
         NbtMapBuilder statesBuilder = NbtMap.builder();
-        statesBuilder.putAll(states);
+        statesBuilder.putAll(new TreeMap<>(states));
 
         NbtMap tag = NbtMap.builder()
-                .putString("name", block.getString("name"))
+                .putString("name", name)
                 .putCompound("states", statesBuilder.build())
                 .build();
 
@@ -72,21 +154,84 @@ public class BlockPaletteUtils {
             throw new RuntimeException(e);
         }
 
-        return fnv1a_32(bytes);
+        int hash = FNV1_32_INIT;
+        for (byte datum : bytes) {
+            hash = fnv1a_32(hash, datum);
+        }
+        return hash;
     }
 
     private static final int FNV1_32_INIT = 0x811c9dc5;
     private static final int FNV1_PRIME_32 = 0x01000193;
 
-    private static int fnv1a_32(byte[] data) {
-        int hash = FNV1_32_INIT;
-        for (byte datum : data) {
-            hash ^= (datum & 0xff);
-            hash *= FNV1_PRIME_32;
+    private static int fnv1a_32(int hash, int datum) {
+        return (hash ^ (datum & 0xff)) * FNV1_PRIME_32;
+    }
+
+    private static int fnv1a_32_le(int hash, int value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            hash = fnv1a_32(hash, value >>> (i * 8));
         }
         return hash;
     }
 
+    /**
+     * Hashes a string the way the little endian NBT writer encodes it: an unsigned short byte length followed by
+     * the UTF-8 bytes.
+     */
+    private static int fnv1a_32_utf(int hash, String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1; // Unpaired surrogates are replaced by '?'
+            } else {
+                length += 3;
+            }
+        }
+        hash = fnv1a_32_le(hash, length, Short.BYTES);
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                hash = fnv1a_32(hash, c);
+            } else if (c < 0x800) {
+                hash = fnv1a_32(hash, 0xC0 | (c >> 6));
+                hash = fnv1a_32(hash, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                hash = fnv1a_32(hash, 0xF0 | (codePoint >> 18));
+                hash = fnv1a_32(hash, 0x80 | ((codePoint >> 12) & 0x3F));
+                hash = fnv1a_32(hash, 0x80 | ((codePoint >> 6) & 0x3F));
+                hash = fnv1a_32(hash, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                hash = fnv1a_32(hash, '?');
+            } else {
+                hash = fnv1a_32(hash, 0xE0 | (c >> 12));
+                hash = fnv1a_32(hash, 0x80 | ((c >> 6) & 0x3F));
+                hash = fnv1a_32(hash, 0x80 | (c & 0x3F));
+            }
+        }
+        return hash;
+    }
+
+    @FunctionalInterface
+    public interface TraitConsumer {
+        /**
+         * @param index index of the block state in the palette
+         * @param trait name of the state property
+         * @param value value of the state property
+         */
+        void accept(int index, String trait, Object value);
+    }
+
     @Value
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private static class Entry {
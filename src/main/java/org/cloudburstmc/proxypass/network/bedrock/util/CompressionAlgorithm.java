@@ -0,0 +1,17 @@
+package org.cloudburstmc.proxypass.network.bedrock.util;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.cloudburstmc.protocol.bedrock.data.PacketCompressionAlgorithm;
+
+@Getter
+@RequiredArgsConstructor
+public enum CompressionAlgorithm {
+    @JsonProperty("zlib")
+    ZLIB(PacketCompressionAlgorithm.ZLIB),
+    @JsonProperty("snappy")
+    SNAPPY(PacketCompressionAlgorithm.SNAPPY);
+
+    private final PacketCompressionAlgorithm algorithm;
+}
@@ -14,6 +14,7 @@ import org.cloudburstmc.protocol.bedrock.data.inventory.crafting.recipe.*;
 import org.cloudburstmc.protocol.bedrock.data.inventory.descriptor.*;
 import org.cloudburstmc.protocol.bedrock.packet.CraftingDataPacket;
 import org.cloudburstmc.proxypass.ProxyPass;
+import org.cloudburstmc.proxypass.network.bedrock.translation.ItemPalette;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -24,6 +25,7 @@ public class RecipeUtils {
     private static final char[] SHAPE_CHARS = {'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J'};
 
     public static void writeRecipes(CraftingDataPacket packet, ProxyPass proxy) {
+        ItemPalette items = proxy.getItemTranslation().getServerPalette();
         List<CraftingDataEntry> entries = new ArrayList<>();
         List<PotionMixDataEntry> potions = new ArrayList<>();
         List<ContainerMixDataEntry> containers = new ArrayList<>();
@@ -43,7 +45,7 @@ public class RecipeUtils {
             if (recipe instanceof CraftingRecipeData craftingRecipe) {
                 entry.id = craftingRecipe.getId();
                 entry.priority = craftingRecipe.getPriority();
-                entry.output = writeItemArray(craftingRecipe.getResults().toArray(new ItemData[0]));
+                entry.output = writeItemArray(craftingRecipe.getResults().toArray(new ItemData[0]), items);
             }
             if (recipe instanceof ShapedRecipeData shapedRecipe) {
 
@@ -94,27 +96,27 @@ public class RecipeUtils {
                 Integer damage = furnaceRecipe.getInputData();
                 if (damage == 0x7fff) damage = -1;
                 if (damage == 0) damage = null;
-                entry.input = new Item(furnaceRecipe.getInputId(), ProxyPass.legacyIdMap.get(furnaceRecipe.getInputId()), damage, null, null);
-                entry.output = itemFromNetwork(furnaceRecipe.getResult());
+                entry.input = new Item(furnaceRecipe.getInputId(), items.getIdentifier(furnaceRecipe.getInputId()), damage, null, null);
+                entry.output = itemFromNetwork(furnaceRecipe.getResult(), items);
             }
             entries.add(entry);
         }
         for (PotionMixData potion : packet.getPotionMixData()) {
             potions.add(new PotionMixDataEntry(
-                    ProxyPass.legacyIdMap.get(potion.getInputId()),
+                    items.getIdentifier(potion.getInputId()),
                     potion.getInputMeta(),
-                    ProxyPass.legacyIdMap.get(potion.getReagentId()),
+                    items.getIdentifier(potion.getReagentId()),
                     potion.getReagentMeta(),
-                    ProxyPass.legacyIdMap.get(potion.getOutputId()),
+                    items.getIdentifier(potion.getOutputId()),
                     potion.getOutputMeta()
             ));
         }
 
         for (ContainerMixData container : packet.getContainerMixData()) {
             containers.add(new ContainerMixDataEntry(
-                    ProxyPass.legacyIdMap.get(container.getInputId()),
-                    ProxyPass.legacyIdMap.get(container.getReagentId()),
-                    ProxyPass.legacyIdMap.get(container.getOutputId())
+                    items.getIdentifier(container.getInputId()),
+                    items.getIdentifier(container.getReagentId()),
+                    items.getIdentifier(container.getOutputId())
             ));
         }
 
@@ -124,10 +126,10 @@ public class RecipeUtils {
         proxy.saveJson("recipes.json", recipes);
     }
 
-    private static List<Item> writeItemArray(ItemData[] inputs) {
+    private static List<Item> writeItemArray(ItemData[] inputs, ItemPalette items) {
         List<Item> outputs = new ArrayList<>();
         for (ItemData input : inputs) {
-            Item item = itemFromNetwork(input);
+            Item item = itemFromNetwork(input, items);
             if (item != Item.EMPTY) {
                 outputs.add(item);
             }
@@ -160,9 +162,9 @@ public class RecipeUtils {
         }
     }
 
-    private static Item itemFromNetwork(ItemData data) {
+    private static Item itemFromNetwork(ItemData data, ItemPalette items) {
         int id = data.getDefinition().getRuntimeId();
-        String identifier = ProxyPass.legacyIdMap.get(id);
+        String identifier = items.getIdentifier(id);
         Integer damage = data.getDamage();
         Integer count = data.getCount();
         String tag = nbtToBase64(data.getTag());
@@ -0,0 +1,24 @@
+package org.cloudburstmc.proxypass.network.bedrock.util;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * What the outbound scheduler does with low priority packets while a client cannot keep up.
+ */
+public enum SheddingPolicy {
+    /**
+     * Keep every packet, only send the more important ones first
+     */
+    @JsonProperty("none")
+    NONE,
+    /**
+     * Replace a queued movement of an entity by its newer movement and drop the oldest cosmetic packets over the limit
+     */
+    @JsonProperty("coalesce")
+    COALESCE,
+    /**
+     * Coalesce, and drop cosmetic packets altogether
+     */
+    @JsonProperty("drop")
+    DROP
+}
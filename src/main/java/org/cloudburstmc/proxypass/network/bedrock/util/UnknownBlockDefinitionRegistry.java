@@ -2,17 +2,94 @@ package org.cloudburstmc.proxypass.network.bedrock.util;
 
 import org.cloudburstmc.protocol.bedrock.data.definitions.BlockDefinition;
 import org.cloudburstmc.protocol.common.DefinitionRegistry;
+import org.cloudburstmc.proxypass.network.bedrock.translation.BlockHashIndex;
 
+/**
+ * Block definitions which only carry a runtime ID.
+ * <p>
+ * The definitions of every runtime ID in the palette are allocated once, so lookups return canonical instances
+ * without allocating. IDs outside of the palette still get a definition, allocated on demand.
+ * <p>
+ * A registry created with {@link #hashed(BlockHashIndex, UnknownBlockDefinitionRegistry)} is keyed by hashed network
+ * IDs instead of sequential runtime IDs, for sessions where the server enabled hashed block network IDs.
+ * <p>
+ * The codec helpers of a session keep the registry they were given at StartGame, while a reload hands the handlers
+ * definitions of a new registry. A registry built on reload therefore reuses the canonical definitions of the one it
+ * replaces for every ID both know, so definitions from either pass the identity check of the other.
+ */
 public class UnknownBlockDefinitionRegistry implements DefinitionRegistry<BlockDefinition> {
 
+    private final UnknownDefinition[] definitions;
+    /**
+     * Hashed network ID to index into {@link #definitions}, null for sequential runtime IDs.
+     */
+    private final BlockHashIndex hashIndex;
+
+    /**
+     * @param paletteSize number of runtime IDs to preallocate definitions for
+     * @param previous    registry this one replaces, or null
+     */
+    public UnknownBlockDefinitionRegistry(int paletteSize, UnknownBlockDefinitionRegistry previous) {
+        this.definitions = new UnknownDefinition[paletteSize];
+        this.hashIndex = null;
+        for (int runtimeId = 0; runtimeId < paletteSize; runtimeId++) {
+            this.definitions[runtimeId] = canonical(previous, runtimeId);
+        }
+    }
+
+    private UnknownBlockDefinitionRegistry(BlockHashIndex hashIndex, UnknownBlockDefinitionRegistry previous) {
+        this.definitions = new UnknownDefinition[hashIndex.size()];
+        this.hashIndex = hashIndex;
+        for (int i = 0; i < this.definitions.length; i++) {
+            this.definitions[i] = canonical(previous, hashIndex.hashOf(i));
+        }
+    }
+
+    /**
+     * @param hashIndex hashed network IDs to preallocate definitions for
+     * @param previous  registry this one replaces, or null
+     */
+    public static UnknownBlockDefinitionRegistry hashed(BlockHashIndex hashIndex, UnknownBlockDefinitionRegistry previous) {
+        return new UnknownBlockDefinitionRegistry(hashIndex, previous);
+    }
+
+    /**
+     * @return the preallocated definition of the previous registry for this ID, or a new one
+     */
+    private static UnknownDefinition canonical(UnknownBlockDefinitionRegistry previous, int runtimeId) {
+        if (previous != null) {
+            int index = previous.indexOf(runtimeId);
+            if (index >= 0 && index < previous.definitions.length) {
+                return previous.definitions[index];
+            }
+        }
+        return new UnknownDefinition(runtimeId);
+    }
+
     @Override
     public BlockDefinition getDefinition(int runtimeId) {
-        return new UnknownDefinition(runtimeId);
+        int index = this.indexOf(runtimeId);
+        if (index < 0 || index >= this.definitions.length) {
+            return new UnknownDefinition(runtimeId);
+        }
+        return this.definitions[index];
     }
 
     @Override
     public boolean isRegistered(BlockDefinition blockDefinition) {
-        return true;
+        int index = this.indexOf(blockDefinition.getRuntimeId());
+        if (index < 0 || index >= this.definitions.length) {
+            return blockDefinition instanceof UnknownDefinition;
+        }
+        return this.definitions[index] == blockDefinition;
+    }
+
+    private int indexOf(int runtimeId) {
+        return this.hashIndex == null ? runtimeId : this.hashIndex.indexOf(runtimeId);
+    }
+
+    public int getPaletteSize() {
+        return this.definitions.length;
     }
 
     record UnknownDefinition(int runtimeId) implements BlockDefinition {